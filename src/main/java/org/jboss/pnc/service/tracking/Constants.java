@@ -41,4 +41,30 @@ public class Constants {
         }
     }
 
+    /**
+     * Format of the records in export zips. Import reads both.
+     */
+    public enum EXPORT_FORMAT {
+        JAVA("java"), BINARY("binary");
+
+        private final String value;
+
+        EXPORT_FORMAT(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public static EXPORT_FORMAT fromValue(String value) {
+            for (EXPORT_FORMAT format : values()) {
+                if (format.value.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + value);
+        }
+    }
+
 }
@@ -15,7 +15,10 @@
  */
 package org.jboss.pnc.service.tracking.change;
 
-import io.smallrye.common.annotation.Blocking;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.smallrye.reactive.messaging.annotations.Blocking;
 import org.apache.commons.lang3.StringUtils;
 import org.commonjava.event.common.EventMetadata;
 import org.commonjava.event.file.FileEvent;
@@ -26,20 +29,30 @@ import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.pnc.service.tracking.Constants;
 import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
 import org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery;
+import org.jboss.pnc.service.tracking.data.cassandra.TrackingWriteBuffer;
 import org.jboss.pnc.service.tracking.exception.ContentException;
 import org.jboss.pnc.service.tracking.exception.IndyWorkflowException;
 import org.jboss.pnc.service.tracking.model.AccessChannel;
 import org.jboss.pnc.service.tracking.model.StoreKey;
 import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
 import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.util.AsyncRetry;
 import org.jboss.pnc.service.tracking.util.UrlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 import static org.jboss.pnc.service.tracking.Constants.ORIGIN_PATH;
 import static org.jboss.pnc.service.tracking.model.StoreEffect.DOWNLOAD;
@@ -52,12 +65,141 @@ public class FoloTrackingListener {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Inject
-    private IndyTrackingConfiguration trackingConfig;
+    IndyTrackingConfiguration trackingConfig;
 
     @Inject
-    private CassandraTrackingQuery recordManager;
+    CassandraTrackingQuery recordManager;
+
+    @Inject
+    TrackingWriteBuffer writeBuffer;
+
+    @Inject
+    MeterRegistry registry;
+
+    private KeyedLanes lanes;
+
+    private Counter failedBatches;
+
+    @PostConstruct
+    void init() {
+        MeterRegistry meters = registry == null ? Metrics.globalRegistry : registry;
+        lanes = new KeyedLanes(trackingConfig.kafkaLanes(), meters);
+        failedBatches = Counter.builder("tracking.kafka.batch.failures")
+                .description("File events batches nacked after their writes failed all retries")
+                .register(meters);
+        logger.info("Recording file events through {} key-hashed lanes", lanes.size());
+    }
 
     public void handleFileAccessEvent(final FileEvent event) throws IndyWorkflowException {
+        TrackedContentEntry entry = toAccessEntry(event);
+        if (entry == null) {
+            return;
+        }
+        try {
+            recordManager.recordArtifact(entry);
+        } catch (final ContentException | IndyWorkflowException e) {
+            logger.error(
+                    String.format("Failed to record download: %s. Reason: %s", event.getSourcePath(), e.getMessage()),
+                    e);
+        }
+    }
+
+    public void handleFileStorageEvent(final FileEvent event) throws IndyWorkflowException {
+        TrackedContentEntry entry = toStorageEntry(event);
+        if (entry == null) {
+            return;
+        }
+        try {
+            recordManager.recordArtifact(entry);
+        } catch (final ContentException | IndyWorkflowException e) {
+            logger.error(
+                    String.format("Failed to record upload: %s. Reason: %s", event.getTargetPath(), e.getMessage()),
+                    e);
+        }
+    }
+
+    /**
+     * Handle a batch of file events polled from Kafka. The batches are handled one after the other, so the writes of a
+     * key and the committed offsets keep the order of their partition; the consumers of the channel are scaled with its
+     * partitions attribute. Events are converted to tracking entries and grouped by tracking key, and the groups of the
+     * batch are written in parallel through the lane of their key, see {@link KeyedLanes}. A failed write is retried in
+     * its lane, up to tracking.kafka.write-retries times. The batch is acked only after all of its writes succeeded,
+     * once a write failed all its retries the whole batch is nacked and handed to the failure-strategy of the channel,
+     * e.g. the dead letter topic. With the write buffer enabled the groups are merged into the buffer in order instead
+     * and the handler returns right away, so the next batches are merged into the same buffer; each batch is acked
+     * or nacked once the flush of its entries completed, the buffer retries its failed flushes the same way. The
+     * commit strategy of the channel only commits the offsets up to the first batch not acked yet.
+     */
+    @Blocking
+    @Incoming("file-event-in")
+    public CompletionStage<Void> handleFileEvents(Message<List<FileEvent>> message) {
+        List<FileEvent> events = message.getPayload();
+        Map<TrackingKey, List<TrackedContentEntry>> groups = new LinkedHashMap<>();
+        for (FileEvent event : events) {
+            try {
+                TrackedContentEntry entry = toTrackedContentEntry(event);
+                if (entry != null) {
+                    groups.computeIfAbsent(entry.getTrackingKey(), k -> new ArrayList<>()).add(entry);
+                }
+            } catch (Throwable e) {
+                logger.error("Failed to handle the file event: {}", event, e);
+            }
+        }
+
+        logger.debug("Recording {} file events of {} tracking keys", events.size(), groups.size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Map.Entry<TrackingKey, List<TrackedContentEntry>> group : groups.entrySet()) {
+            CompletionStage<Void> write = (writeBuffer.isEnabled()
+                    ? writeBuffer.add(group.getKey(), group.getValue())
+                    : lanes.submit(group.getKey(), () -> writeWithRetries(group.getKey(), group.getValue())))
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (!(cause instanceof ContentException)) {
+                            throw new CompletionException(cause);
+                        }
+                        logger.error(
+                                "Failed to record {} entries for: {}. Reason: {}",
+                                group.getValue().size(),
+                                group.getKey(),
+                                cause.getMessage());
+                        return null;
+                    });
+            writes.add(write.toCompletableFuture());
+        }
+
+        CompletionStage<Void> acked = CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .handle((v, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        logger.error("Failed to record the file events batch, size: {}", events.size(), cause);
+                        failedBatches.increment();
+                        return message.nack(cause);
+                    }
+                    return message.ack();
+                })
+                .thenCompose(Function.identity());
+        return writeBuffer.isEnabled() ? CompletableFuture.completedFuture(null) : acked;
+    }
+
+    private CompletionStage<Void> writeWithRetries(TrackingKey key, List<TrackedContentEntry> entries) {
+        return AsyncRetry.retry(
+                "record " + entries.size() + " entries for " + key,
+                trackingConfig.kafkaWriteRetries(),
+                trackingConfig.kafkaWriteRetryDelay(),
+                e -> !(e instanceof ContentException),
+                () -> recordManager.recordArtifactsAsync(key, entries));
+    }
+
+    private TrackedContentEntry toTrackedContentEntry(final FileEvent event) throws IndyWorkflowException {
+        if (event.getEventType().equals(FileEventType.ACCESS)) {
+            return toAccessEntry(event);
+        } else if (event.getEventType().equals(FileEventType.STORAGE)) {
+            return toStorageEntry(event);
+        }
+        return null;
+    }
+
+    private TrackedContentEntry toAccessEntry(final FileEvent event) throws IndyWorkflowException {
         logger.info("FILE ACCESS: {}", event);
 
         EventMetadata metadata = event.getEventMetadata();
@@ -70,7 +212,7 @@ public class FoloTrackingListener {
          */
         if (originPath != null && originPath.contains("api/folo/track")) {
             logger.trace("NOT tracking content requests from indy itself, path: {}", originPath);
-            return;
+            return null;
         }
 
         String trackingId = event.getSessionId();
@@ -78,7 +220,7 @@ public class FoloTrackingListener {
         final TrackingKey trackingKey = StringUtils.isNotBlank(trackingId) ? new TrackingKey(trackingId) : null;
         if (trackingKey == null) {
             logger.trace("No tracking key for access to: {}", event.getTargetPath());
-            return;
+            return null;
         }
         final AccessChannel accessChannel = AccessChannel.valueOf((String) metadata.get(Constants.ACCESS_CHANNEL));
 
@@ -86,14 +228,14 @@ public class FoloTrackingListener {
             String keyString = event.getStoreKey();
             if (StringUtils.isBlank(keyString)) {
                 logger.trace("NOT tracking content without StoreKey");
-                return;
+                return null;
             }
             StoreKey storeKey = StoreKey.fromString(event.getStoreKey());
             if (!trackingConfig.trackGroupContent() && storeKey.getType() == group) {
                 logger.trace(
                         "NOT tracking content stored directly in group: {}. This content is generally aggregated metadata, and can be recalculated. Groups may not be stable in some build environments",
                         storeKey);
-                return;
+                return null;
             }
 
             final String trackingPath = originPath == null ? event.getTargetPath() : originPath;
@@ -112,7 +254,7 @@ public class FoloTrackingListener {
             if (sourceLocation != null && path != null) {
                 remoteUrl = UrlUtils.buildUrl(sourceLocation, path);
             }
-            TrackedContentEntry entry = new TrackedContentEntry(
+            return new TrackedContentEntry(
                     trackingKey,
                     storeKey,
                     accessChannel,
@@ -123,22 +265,17 @@ public class FoloTrackingListener {
                     event.getMd5(),
                     event.getSha1(),
                     event.getChecksum());
-            recordManager.recordArtifact(entry);
-        } catch (final ContentException | IndyWorkflowException e) {
-            logger.error(
-                    String.format("Failed to record download: %s. Reason: %s", event.getSourcePath(), e.getMessage()),
-                    e);
         } catch (final MalformedURLException e) {
             throw new IndyWorkflowException("Cannot format URL. Reason: %s", e, e.getMessage());
         }
     }
 
-    public void handleFileStorageEvent(final FileEvent event) throws IndyWorkflowException {
+    private TrackedContentEntry toStorageEntry(final FileEvent event) throws IndyWorkflowException {
         logger.info("FILE STORAGE: {}", event);
 
         if (TransferOperation.UPLOAD != event.getOperation()) {
             logger.trace("Not a file upload from client; skipping tracking of storage");
-            return;
+            return null;
         }
 
         EventMetadata metadata = event.getEventMetadata();
@@ -148,13 +285,13 @@ public class FoloTrackingListener {
         final TrackingKey trackingKey = StringUtils.isNotBlank(trackingId) ? new TrackingKey(trackingId) : null;
         if (trackingKey == null) {
             logger.trace("No tracking key. Not recording.");
-            return;
+            return null;
         }
         final AccessChannel accessChannel = AccessChannel.valueOf((String) metadata.get(Constants.ACCESS_CHANNEL));
         String keyString = event.getStoreKey();
         if (StringUtils.isBlank(keyString)) {
             logger.trace("NOT tracking content without StoreKey");
-            return;
+            return null;
         }
         StoreKey storeKey = StoreKey.fromString(event.getStoreKey());
 
@@ -162,7 +299,7 @@ public class FoloTrackingListener {
             logger.trace(
                     "NOT tracking content stored directly in group: {}. This content is generally aggregated metadata, and can be recalculated. Groups may not be stable in some build environments",
                     storeKey);
-            return;
+            return null;
         }
 
         try {
@@ -174,7 +311,7 @@ public class FoloTrackingListener {
             if (sourceLocation != null && path != null) {
                 remoteUrl = UrlUtils.buildUrl(sourceLocation, path);
             }
-            TrackedContentEntry entry = new TrackedContentEntry(
+            return new TrackedContentEntry(
                     trackingKey,
                     storeKey,
                     accessChannel,
@@ -185,35 +322,9 @@ public class FoloTrackingListener {
                     event.getMd5(),
                     event.getSha1(),
                     event.getChecksum());
-
-            recordManager.recordArtifact(entry);
-        } catch (final ContentException | IndyWorkflowException e) {
-            logger.error(
-                    String.format("Failed to record download: %s. Reason: %s", event.getSourcePath(), e.getMessage()),
-                    e);
         } catch (final MalformedURLException e) {
             throw new IndyWorkflowException("Cannot format URL. Reason: %s", e, e.getMessage());
         }
     }
 
-    @Blocking
-    @Incoming("file-event-in")
-    public CompletionStage<Void> handleFileEvent(Message<FileEvent> message) {
-        FileEvent event = message.getPayload();
-        if (event.getEventType().equals(FileEventType.ACCESS)) {
-            try {
-                handleFileAccessEvent(event);
-            } catch (Throwable e) {
-                logger.error("Failed to handle the file access event", e);
-            }
-        } else if (event.getEventType().equals(FileEventType.STORAGE)) {
-            try {
-                handleFileStorageEvent(event);
-            } catch (Throwable e) {
-                logger.error("Failed to handle the file storage event", e);
-            }
-        }
-        return message.ack();
-    }
-
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.change;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous tasks in a fixed number of lanes picked by the hash of their key. The tasks of one lane run one
+ * after the other in submission order, so the tasks of a key never overlap and keep their order, while the lanes run in
+ * parallel. A failed task fails its own stage only, the next task of the lane still runs.
+ * <p>
+ * The tasks queued or running in a lane are exposed as the gauge tracking.kafka.lane.depth, and the time from the
+ * start of a task to its completion as the timer tracking.kafka.lane.latency, both tagged by lane.
+ */
+class KeyedLanes {
+    private final Lane[] lanes;
+
+    KeyedLanes(int size, MeterRegistry registry) {
+        lanes = new Lane[Math.max(1, size)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, registry);
+        }
+    }
+
+    int size() {
+        return lanes.length;
+    }
+
+    CompletionStage<Void> submit(Object key, Supplier<CompletionStage<Void>> task) {
+        return lanes[Math.floorMod(key.hashCode(), lanes.length)].submit(task);
+    }
+
+    private static final class Lane {
+        private final AtomicInteger depth = new AtomicInteger();
+
+        private final Timer latency;
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private Lane(int index, MeterRegistry registry) {
+            String lane = String.valueOf(index);
+            Gauge.builder("tracking.kafka.lane.depth", depth, AtomicInteger::get)
+                    .description("Tasks queued or running in a key-hashed lane")
+                    .tag("lane", lane)
+                    .register(registry);
+            latency = Timer.builder("tracking.kafka.lane.latency")
+                    .description("Processing time of the tasks of a key-hashed lane")
+                    .tag("lane", lane)
+                    .register(registry);
+        }
+
+        private synchronized CompletionStage<Void> submit(Supplier<CompletionStage<Void>> task) {
+            depth.incrementAndGet();
+            CompletableFuture<Void> next = tail.handle((r, e) -> null).thenCompose(v -> run(task));
+            tail = next;
+            return next;
+        }
+
+        private CompletionStage<Void> run(Supplier<CompletionStage<Void>> task) {
+            long start = System.nanoTime();
+            CompletionStage<Void> stage;
+            try {
+                stage = task.get();
+            } catch (Throwable e) {
+                stage = CompletableFuture.failedFuture(e);
+            }
+            return stage.whenComplete((r, e) -> {
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                depth.decrementAndGet();
+            });
+        }
+    }
+}
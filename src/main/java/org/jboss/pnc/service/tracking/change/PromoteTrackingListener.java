@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.change;
+
+import org.commonjava.event.promote.PathsPromoteCompleteEvent;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Indexes the completed promotions by tracking id and target store, so that the guard check of the batch deletes is
+ * answered locally instead of asking the promote service, see AdminController#deletionAdditionalGuardCheck. The index
+ * only speeds up the check: an event which can't be recorded is logged and skipped, and the check falls back to the
+ * promote service for the promotions missing from it.
+ */
+@ApplicationScoped
+public class PromoteTrackingListener {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Inject
+    private CassandraTrackingQuery recordManager;
+
+    @Incoming("promote-event-in")
+    public CompletionStage<Void> handlePromoteCompleteEvent(final PathsPromoteCompleteEvent event) {
+        if (isBlank(event.getTrackingId()) || isBlank(event.getTargetStore())) {
+            logger.trace("No tracking id or target store, not indexing promotion: {}", event.getPromoteId());
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            TrackingKey trackingKey = new TrackingKey(event.getTrackingId());
+            StoreKey source = isBlank(event.getSourceStore()) ? null : StoreKey.fromString(event.getSourceStore());
+            StoreKey target = StoreKey.fromString(event.getTargetStore());
+            logger.debug("Indexing promotion: {} of {} to {}", event.getPromoteId(), trackingKey, target);
+            return recordManager
+                    .recordPromotionAsync(trackingKey, event.getPromoteId(), source, target, event.getCompletedPaths())
+                    .exceptionally(e -> {
+                        logger.warn("Failed to index promotion: {}", event.getPromoteId(), e);
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to index promotion: {}", event.getPromoteId(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -41,4 +41,103 @@ public interface IndyTrackingConfiguration {
     @WithDefault("false")
     Boolean deletionAdditionalGuardCheck();
 
+    /**
+     * Render GET /{id}/record while the entries are paged from Cassandra instead of loading the whole record first.
+     * Entries are then ordered by store key and path as stored, rather than sorted.
+     */
+    @WithName("record.streaming")
+    @WithDefault("false")
+    Boolean recordStreaming();
+
+    /**
+     * Format of the records in /report/export zips when the request does not pick one: java (serialization, readable
+     * by older services) or binary (compact, see TrackedContentCodec).
+     */
+    @WithName("export.format")
+    @WithDefault("java")
+    String exportFormat();
+
+    /**
+     * Max number of records of a /report/import written to Cassandra at the same time, while the next ones are decoded.
+     */
+    @WithName("import.concurrency")
+    @WithDefault("16")
+    Integer importConcurrency();
+
+    /**
+     * Buffer the tracked entries of the file events and write them merged, see TrackingWriteBuffer.
+     */
+    @WithName("write-buffer.enabled")
+    @WithDefault("false")
+    Boolean writeBufferEnabled();
+
+    /**
+     * Milliseconds between two flushes of the write buffer. The file events are acked after the flush, so keep it well
+     * under the max age of unprocessed records of the Kafka commit strategy.
+     */
+    @WithName("write-buffer.flush-interval")
+    @WithDefault("1000")
+    Long writeBufferFlushInterval();
+
+    /**
+     * Number of buffered entries which triggers a flush before the interval.
+     */
+    @WithName("write-buffer.max-entries")
+    @WithDefault("10000")
+    Integer writeBufferMaxEntries();
+
+    /**
+     * Number of key-hashed lanes the tracking keys of a file events batch are written through in parallel, the writes
+     * of one lane run in order. The batches are handled one after the other, the Kafka consumers of a pod are set with
+     * the partitions attribute of the file-event-in channel.
+     */
+    @WithName("kafka.lanes")
+    @WithDefault("16")
+    Integer kafkaLanes();
+
+    /**
+     * Number of times the write of the entries of a tracking key, or the flush of the write buffer, is retried before
+     * its file events batches are nacked, which hands them to the failure-strategy of the file-event-in channel.
+     */
+    @WithName("kafka.write-retries")
+    @WithDefault("3")
+    Integer kafkaWriteRetries();
+
+    /**
+     * Milliseconds before the first retry of a failed write, doubled for each next retry.
+     */
+    @WithName("kafka.write-retry-delay")
+    @WithDefault("500")
+    Long kafkaWriteRetryDelay();
+
+    /**
+     * Max number of tracked entries, uploads and downloads, of the sealed records kept in memory. A record is weighed
+     * by its entries, so a few huge records can not hold more than this.
+     */
+    @WithName("sealed-cache.max-entries")
+    @WithDefault("500000")
+    Long sealedCacheMaxEntries();
+
+    /**
+     * Milliseconds a sealed record is served from memory. Deletes and recalculations only drop the record from the
+     * cache of the instance which ran them, the other instances serve it until it expires.
+     */
+    @WithName("sealed-cache.expire-after-write")
+    @WithDefault("60000")
+    Long sealedCacheExpireAfterWrite();
+
+    /**
+     * Pretty-print the json responses when the request does not pick with ?pretty= or an Accept parameter.
+     */
+    @WithName("json.pretty")
+    @WithDefault("true")
+    Boolean jsonPretty();
+
+    /**
+     * Encode the json responses with br or gzip when the Accept-Encoding of the request allows it.
+     */
+    @WithName("json.compression")
+    @WithDefault("true")
+    Boolean jsonCompression();
+
 }
@@ -15,6 +15,7 @@
  */
 package org.jboss.pnc.service.tracking.controller;
 
+import com.google.common.collect.Iterators;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.pnc.service.tracking.Constants;
 import org.jboss.pnc.service.tracking.client.content.BatchDeleteRequest;
@@ -25,9 +26,12 @@ import org.jboss.pnc.service.tracking.client.storage.StorageBatchDeleteRequest;
 import org.jboss.pnc.service.tracking.client.storage.StorageService;
 import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
 import org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery;
+import org.jboss.pnc.service.tracking.data.cassandra.TrackingKeyPage;
+import org.jboss.pnc.service.tracking.data.cassandra.TrackingWriteBuffer;
 import org.jboss.pnc.service.tracking.exception.ContentException;
 import org.jboss.pnc.service.tracking.exception.IndyWorkflowException;
 import org.jboss.pnc.service.tracking.jaxrs.DTOStreamingOutput;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
 import org.jboss.pnc.service.tracking.model.StoreKey;
 import org.jboss.pnc.service.tracking.model.TrackedContent;
 import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
@@ -35,16 +39,21 @@ import org.jboss.pnc.service.tracking.model.TrackingKey;
 import org.jboss.pnc.service.tracking.model.dto.ContentDTO;
 import org.jboss.pnc.service.tracking.model.dto.ContentEntryDTO;
 import org.jboss.pnc.service.tracking.model.dto.ContentTransferDTO;
+import org.jboss.pnc.service.tracking.model.dto.ImportResultDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentStreamDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackingIdsDTO;
-import org.jboss.pnc.service.tracking.util.UrlUtils;
+import org.jboss.pnc.service.tracking.model.dto.TrackingIdsPageDTO;
+import org.jboss.pnc.service.tracking.util.LocalUrlBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.commons.io.input.CountingInputStream;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
 import static org.jboss.pnc.service.tracking.util.TrackingUtils.readZipInputStreamAnd;
 import static org.jboss.pnc.service.tracking.util.TrackingUtils.zipTrackedContent;
@@ -53,12 +62,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
@@ -87,6 +105,11 @@ public class AdminController {
     @Inject
     private CassandraTrackingQuery recordManager;
 
+    @Inject
+    private TrackingWriteBuffer writeBuffer;
+
+    private final AtomicReference<ImportProgress> lastImport = new AtomicReference<>();
+
     protected AdminController() {
     }
 
@@ -96,45 +119,190 @@ public class AdminController {
 
     public TrackedContentDTO seal(final String id, final String baseUrl) {
         TrackingKey tk = new TrackingKey(id);
+        if (writeBuffer != null && writeBuffer.isEnabled()) {
+            // the buffered entries belong to the record, write them before it is sealed
+            try {
+                writeBuffer.flush(tk).toCompletableFuture().join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof ContentException)) {
+                    throw e;
+                }
+            }
+        }
         return constructContentDTO(recordManager.seal(tk), baseUrl);
     }
 
-    public void importRecordZip(InputStream stream) throws IndyWorkflowException {
+    /**
+     * Import the records of a zip. The records are decoded on the calling thread while up to import.concurrency of
+     * them are written to Cassandra in the background. A record which can not be decoded or written is reported in the
+     * result and does not stop the import.
+     */
+    public ImportResultDTO importRecordZip(InputStream stream) throws IndyWorkflowException {
+        CountingInputStream counting = new CountingInputStream(stream);
+        ImportProgress progress = new ImportProgress(counting);
+        lastImport.set(progress);
+
+        int concurrency = config.importConcurrency();
+        Semaphore writers = new Semaphore(concurrency);
         try {
-            int count = readZipInputStreamAnd(stream, (record) -> recordManager.addSealedRecord(record));
-            logger.debug("Import records done, size: {}", count);
+            readZipInputStreamAnd(counting, record -> {
+                writers.acquireUninterruptibly();
+                int entries = size(record.getUploads()) + size(record.getDownloads());
+                try {
+                    recordManager.addSealedRecordAsync(record).whenComplete((r, e) -> {
+                        writers.release();
+                        progress.done(record.getKey().getId(), entries, e);
+                    });
+                } catch (RuntimeException e) {
+                    writers.release();
+                    progress.done(record.getKey().getId(), entries, e);
+                }
+                progress.logIfDue();
+            }, progress::failed);
         } catch (Exception e) {
             throw new IndyWorkflowException("Failed to import zip file", e);
+        } finally {
+            // let the writes in flight finish either way
+            writers.acquireUninterruptibly(concurrency);
+            progress.finish();
         }
+
+        ImportResultDTO result = progress.toDTO();
+        logger.info(
+                "Import records done, records: {}, entries: {}, bytes: {}, failed: {}, in {} ms",
+                result.getRecords(),
+                result.getEntries(),
+                result.getBytes(),
+                result.getFailedRecords(),
+                result.getElapsedMillis());
+        return result;
     }
 
-    public File renderReportZip() throws IndyWorkflowException {
-        Set<TrackedContent> sealed = recordManager.getSealed(); // only care about sealed records
-        try {
-            File file = Paths.get(config.baseDir().getAbsolutePath(), FOLO_DIR, FOLO_SEALED_ZIP).toFile();
-            if (file.exists()) {
-                file.delete();
-            }
-            file.getParentFile().mkdirs(); // make dirs if not exist
+    /**
+     * Get the progress of the running import, or the result of the last one. Null if no import ran since the start.
+     */
+    public ImportResultDTO getImportProgress() {
+        ImportProgress progress = lastImport.get();
+        return progress == null ? null : progress.toDTO();
+    }
 
-            zipTrackedContent(file, sealed);
+    private static int size(Set<?> entries) {
+        return entries == null ? 0 : entries.size();
+    }
 
-            return file;
-        } catch (IOException e) {
-            throw new IndyWorkflowException("Failed to create zip file", e);
+    /**
+     * Render the sealed records as a zip written straight to the response while the records are read, one at a time.
+     * Entries are ordered by seal day, key hash bucket then tracking id; an interrupted export can be continued by
+     * passing the id of the last complete entry as resumeAfter.
+     *
+     * @param format format of the entries, java or binary, or null for the configured one
+     */
+    public StreamingOutput renderReportZip(final String resumeAfter, final String format)
+            throws IndyWorkflowException {
+        Constants.EXPORT_FORMAT exportFormat;
+        Iterator<TrackedContent> sealed; // only care about sealed records
+        try {
+            exportFormat = Constants.EXPORT_FORMAT.fromValue(format == null ? config.exportFormat() : format);
+            sealed = recordManager.iterateSealed(resumeAfter == null ? null : new TrackingKey(resumeAfter));
+        } catch (IllegalArgumentException e) {
+            throw new IndyWorkflowException(Response.Status.BAD_REQUEST.getStatusCode(), e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new IndyWorkflowException(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getMessage());
         }
+
+        return out -> {
+            AtomicReference<String> last = new AtomicReference<>(resumeAfter);
+            try {
+                int count = zipTrackedContent(
+                        out,
+                        sealed,
+                        exportFormat,
+                        record -> last.set(record.getKey().getId()));
+                logger.debug("Export records done, size: {}", count);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Export interrupted, resume it after: {}", last.get(), e);
+                throw e;
+            }
+        };
     }
 
+    /**
+     * Get the record with the local urls of its entries built on baseUrl, or without local urls if baseUrl is null.
+     * The same goes for the baseUrl of the other record getters.
+     */
     public TrackedContentDTO getRecord(final String id, String baseUrl) throws IndyWorkflowException {
         final TrackingKey tk = new TrackingKey(id);
         return constructContentDTO(recordManager.get(tk), baseUrl);
     }
 
+    /**
+     * Get the record as entry iterators backed by paged queries, so it is rendered while being read. Returns null if
+     * the record has no entries, to let the caller fall back to the legacy record.
+     */
+    public TrackedContentStreamDTO getRecordStream(final String id, String baseUrl) {
+        final TrackingKey tk = new TrackingKey(id);
+        Map<StoreEffect, Iterator<TrackedContentEntry>> entries = recordManager.iterateEntriesByEffect(tk);
+        TrackedContentStreamDTO stream = new TrackedContentStreamDTO(
+                tk,
+                constructContentEntryDTOs(entries.get(StoreEffect.UPLOAD), baseUrl),
+                constructContentEntryDTOs(entries.get(StoreEffect.DOWNLOAD), baseUrl));
+        return stream.isEmpty() ? null : stream;
+    }
+
+    /**
+     * Get the entries of one effect of a record, read without the rows of the other effect and rendered while being
+     * read. Falls back to the legacy record if the record has no entry of the effect.
+     */
+    public Iterator<TrackedContentEntryDTO> getRecordEntries(
+            final String id,
+            final StoreEffect effect,
+            String baseUrl) {
+        final TrackingKey tk = new TrackingKey(id);
+        Iterator<TrackedContentEntry> entries = recordManager.iterateEntries(tk, effect);
+        if (!entries.hasNext()) {
+            TrackedContent legacy = recordManager.getLegacy(tk);
+            if (legacy != null) {
+                entries = (effect == StoreEffect.UPLOAD ? legacy.getUploads() : legacy.getDownloads()).iterator();
+            }
+        }
+        return constructContentEntryDTOs(entries, baseUrl);
+    }
+
+    /**
+     * Get the entries of a record as one iterator, each entry carrying its effect, rendered while being read. The
+     * uploads come before the downloads once the effect table is migrated, before they come in the order of store key
+     * and path. Falls back to the legacy record if the record has no entries.
+     */
+    public Iterator<TrackedContentEntryDTO> getRecordLines(final String id, String baseUrl) {
+        final TrackingKey tk = new TrackingKey(id);
+        Iterator<TrackedContentEntry> entries = recordManager.iterateEntries(tk);
+        if (!entries.hasNext()) {
+            TrackedContent legacy = recordManager.getLegacy(tk);
+            if (legacy != null) {
+                entries = Iterators.concat(legacy.getUploads().iterator(), legacy.getDownloads().iterator());
+            }
+        }
+        LocalUrlBuilder localUrls = localUrls(baseUrl);
+        return Iterators.transform(entries, entry -> {
+            TrackedContentEntryDTO dto = constructContentEntryDTO(entry, localUrls);
+            dto.setEffect(entry.getEffect());
+            return dto;
+        });
+    }
+
     public TrackedContentDTO getLegacyRecord(final String id, String baseUrl) throws IndyWorkflowException {
         final TrackingKey tk = new TrackingKey(id);
         return constructContentDTO(recordManager.getLegacy(tk), baseUrl);
     }
 
+    /**
+     * Whether a record or a legacy record exists for the id, without reading its entries.
+     */
+    public boolean hasRecord(final String id) {
+        final TrackingKey tk = new TrackingKey(id);
+        return recordManager.hasRecord(tk) || recordManager.hasLegacyRecord(tk);
+    }
+
     public void clearRecord(final String id) throws ContentException {
         final TrackingKey tk = new TrackingKey(id);
         recordManager.delete(tk);
@@ -144,19 +312,44 @@ public class AdminController {
         if (content == null) {
             return null;
         }
+        final LocalUrlBuilder localUrls = localUrls(baseUrl);
         final Set<TrackedContentEntryDTO> uploads = new TreeSet<>();
         for (TrackedContentEntry entry : content.getUploads()) {
-            uploads.add(constructContentEntryDTO(entry, baseUrl));
+            uploads.add(constructContentEntryDTO(entry, localUrls));
         }
 
         final Set<TrackedContentEntryDTO> downloads = new TreeSet<>();
         for (TrackedContentEntry entry : content.getDownloads()) {
-            downloads.add(constructContentEntryDTO(entry, baseUrl));
+            downloads.add(constructContentEntryDTO(entry, localUrls));
         }
         return new TrackedContentDTO(content.getKey(), uploads, downloads);
     }
 
-    private TrackedContentEntryDTO constructContentEntryDTO(final TrackedContentEntry entry, String apiBaseUrl) {
+    private Iterator<TrackedContentEntryDTO> constructContentEntryDTOs(
+            final Iterator<TrackedContentEntry> entries,
+            final String baseUrl) {
+        final LocalUrlBuilder localUrls = localUrls(baseUrl);
+        return new Iterator<TrackedContentEntryDTO>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public TrackedContentEntryDTO next() {
+                return constructContentEntryDTO(entries.next(), localUrls);
+            }
+        };
+    }
+
+    // the local urls are left out of the entries when no base url is given
+    private static LocalUrlBuilder localUrls(final String baseUrl) {
+        return baseUrl == null ? null : new LocalUrlBuilder(baseUrl);
+    }
+
+    private TrackedContentEntryDTO constructContentEntryDTO(
+            final TrackedContentEntry entry,
+            final LocalUrlBuilder localUrls) {
         if (entry == null) {
             return null;
         }
@@ -165,26 +358,21 @@ public class AdminController {
                 entry.getAccessChannel(),
                 entry.getPath());
 
-        try {
-            entryDTO.setLocalUrl(
-                    UrlUtils.buildUrl(
-                            apiBaseUrl,
-                            "content",
-                            entryDTO.getStoreKey().getPackageType(),
-                            entryDTO.getStoreKey().getType().singularEndpointName(),
-                            entryDTO.getStoreKey().getName(),
-                            entryDTO.getPath()));
-        } catch (MalformedURLException e) {
-            logger.warn(
-                    String.format(
-                            "Cannot formulate local URL!\n  Base URL: %s"
-                                    + "\n  Store: %s\n  Path: %s\n  Record: %s\n  Reason: %s",
-                            apiBaseUrl,
-                            entry.getStoreKey(),
-                            entry.getPath(),
-                            entry.getTrackingKey(),
-                            e.getMessage()),
-                    e);
+        if (localUrls != null) {
+            try {
+                entryDTO.setLocalUrl(localUrls.build(entryDTO.getStoreKey(), entryDTO.getPath()));
+            } catch (MalformedURLException e) {
+                logger.warn(
+                        String.format(
+                                "Cannot formulate local URL!\n  Base URL: %s"
+                                        + "\n  Store: %s\n  Path: %s\n  Record: %s\n  Reason: %s",
+                                localUrls.getBaseUrl(),
+                                entry.getStoreKey(),
+                                entry.getPath(),
+                                entry.getTrackingKey(),
+                                e.getMessage()),
+                        e);
+            }
         }
 
         entryDTO.setOriginUrl(entry.getOriginUrl());
@@ -273,6 +461,43 @@ public class AdminController {
         return null;
     }
 
+    /**
+     * Get one page of tracking ids of the given types, in-progress ids first. The since/until filters (epoch millis)
+     * apply to the seal time of sealed records and to the time of the first record of in-progress ones.
+     */
+    public TrackingIdsPageDTO getTrackingIdsPage(
+            final Set<Constants.TRACKING_TYPE> types,
+            final String pageToken,
+            final int limit,
+            final Long since,
+            final Long until) throws IndyWorkflowException {
+        List<String> states = new ArrayList<>();
+        if (types.contains(Constants.TRACKING_TYPE.IN_PROGRESS)) {
+            states.add(Constants.TRACKING_TYPE.IN_PROGRESS.getValue());
+        }
+        if (types.contains(Constants.TRACKING_TYPE.SEALED)) {
+            states.add(Constants.TRACKING_TYPE.SEALED.getValue());
+        }
+
+        TrackingKeyPage page;
+        try {
+            page = recordManager.getTrackingKeyPage(states, pageToken, limit, since, until);
+        } catch (IllegalArgumentException e) {
+            throw new IndyWorkflowException(Response.Status.BAD_REQUEST.getStatusCode(), e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new IndyWorkflowException(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getMessage());
+        }
+
+        return new TrackingIdsPageDTO(
+                toIds(page.getKeys(Constants.TRACKING_TYPE.IN_PROGRESS.getValue())),
+                toIds(page.getKeys(Constants.TRACKING_TYPE.SEALED.getValue())),
+                page.getNextPageToken());
+    }
+
+    private static List<String> toIds(List<TrackingKey> keys) {
+        return keys == null ? null : keys.stream().map(TrackingKey::getId).collect(Collectors.toList());
+    }
+
     public TrackedContentDTO recalculateRecord(final String id, final String baseUrl) throws IndyWorkflowException {
         TrackingKey trackingKey = new TrackingKey(id);
         TrackedContent record = recordManager.get(trackingKey);
@@ -320,20 +545,25 @@ public class AdminController {
         return contentService.getZipRepository(dto);
     }
 
-    public boolean recordArtifact(TrackedContentEntry contentEntry) {
-        boolean isRecorded = false;
-        try {
-            isRecorded = recordManager.recordArtifact(contentEntry);
-        } catch (final ContentException | IndyWorkflowException e) {
-            logger.error("Failed to record entry: {}.", contentEntry, e);
-        }
-        return isRecorded;
+    public CompletionStage<Boolean> recordArtifact(TrackedContentEntry contentEntry) {
+        return recordManager.recordArtifactAsync(contentEntry).handle((v, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (!(cause instanceof ContentException)) {
+                    throw new CompletionException(cause);
+                }
+                logger.error("Failed to record entry: {}.", contentEntry, cause);
+                return false;
+            }
+            return true;
+        });
     }
 
     /**
-     * Additional check for batch deletion. It retrieves the promotion record by the trackingID to find the target store
+     * Additional check for batch deletion. It looks up the promotions of the trackingID to find the target store
      * associated with the promotion. If the target store does not match given store, return failed delete validation
-     * result.
+     * result. The promotions indexed from the promote complete events answer the check without a remote call; the
+     * promote service is only asked when the index has no match, and its results are then added to the index.
      */
     public boolean deletionAdditionalGuardCheck(BatchDeleteRequest deleteRequest) {
         if (!config.deletionAdditionalGuardCheck()) {
@@ -342,6 +572,16 @@ public class AdminController {
 
         String trackingID = deleteRequest.getTrackingID();
         final StoreKey givenStore = deleteRequest.getStoreKey();
+        final TrackingKey trackingKey = new TrackingKey(trackingID);
+        try {
+            if (recordManager.isPromotedTo(trackingKey, givenStore)) {
+                logger.info("Deletion guard check passed from promotion index, trackingID: {}", trackingID);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Promotion index lookup failed, asking promote service, trackingID: {}", trackingID, e);
+        }
+
         final AtomicBoolean isOk = new AtomicBoolean(false);
         try {
             Response resp = promoteService.getPromoteRecords(trackingID);
@@ -360,9 +600,11 @@ public class AdminController {
                     .getResultMap();
             if (resultMap != null) {
                 resultMap.forEach((k, v) -> {
-                    if (v.getRequest().getTarget().equals(givenStore)) {
+                    PathsPromoteTrackingRecords.PathsPromoteRequest request = v.getRequest();
+                    if (request.getTarget().equals(givenStore)) {
                         isOk.set(true); // set true if any match found
                     }
+                    indexPromotion(trackingKey, k, request, v.getCompletedPaths());
                 });
             }
         } catch (Exception e) {
@@ -373,6 +615,22 @@ public class AdminController {
         return isOk.get();
     }
 
+    private void indexPromotion(
+            TrackingKey trackingKey,
+            String promoteId,
+            PathsPromoteTrackingRecords.PathsPromoteRequest request,
+            Set<String> paths) {
+        try {
+            recordManager.recordPromotionAsync(trackingKey, promoteId, request.getSource(), request.getTarget(), paths)
+                    .exceptionally(e -> {
+                        logger.debug("Failed to index promotion: {}", promoteId, e);
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            logger.debug("Failed to index promotion: {}", promoteId, e);
+        }
+    }
+
     /**
      * Post-action after successful batch delete: cleans up empty parent folders.
      * <p>
@@ -417,4 +675,83 @@ public class AdminController {
     private boolean isSuccess(Response resp) {
         return Response.Status.fromStatusCode(resp.getStatus()).getFamily() == Response.Status.Family.SUCCESSFUL;
     }
+
+    private static final class ImportProgress {
+        private static final int MAX_REPORTED_FAILURES = 1000;
+
+        private static final long LOG_INTERVAL_MILLIS = 30000;
+
+        private final Logger logger = LoggerFactory.getLogger(getClass());
+
+        private final CountingInputStream stream;
+
+        private final long start = System.currentTimeMillis();
+
+        private final AtomicLong records = new AtomicLong();
+
+        private final AtomicLong entries = new AtomicLong();
+
+        private final AtomicLong failedRecords = new AtomicLong();
+
+        private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+        private volatile long lastLog = start;
+
+        private volatile long end;
+
+        private ImportProgress(CountingInputStream stream) {
+            this.stream = stream;
+        }
+
+        private void done(String id, int entryCount, Throwable error) {
+            if (error == null) {
+                records.incrementAndGet();
+                entries.addAndGet(entryCount);
+            } else {
+                failed(id, error);
+            }
+        }
+
+        private void failed(String id, Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause()
+                    : error;
+            logger.warn("Failed to import record: {}", id, cause);
+            failedRecords.incrementAndGet();
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.put(id, String.valueOf(cause));
+            }
+        }
+
+        private void logIfDue() {
+            long now = System.currentTimeMillis();
+            if (now - lastLog >= LOG_INTERVAL_MILLIS) {
+                lastLog = now;
+                ImportResultDTO progress = toDTO();
+                logger.info(
+                        "Importing records, records: {} ({}/s), entries: {} ({}/s), bytes: {}, failed: {}",
+                        progress.getRecords(),
+                        Math.round(progress.getRecordsPerSecond()),
+                        progress.getEntries(),
+                        Math.round(progress.getEntriesPerSecond()),
+                        progress.getBytes(),
+                        progress.getFailedRecords());
+            }
+        }
+
+        private void finish() {
+            end = System.currentTimeMillis();
+        }
+
+        private ImportResultDTO toDTO() {
+            long finished = end;
+            return new ImportResultDTO(
+                    finished > 0,
+                    records.get(),
+                    entries.get(),
+                    stream.getByteCount(),
+                    (finished > 0 ? finished : System.currentTimeMillis()) - start,
+                    failedRecords.get(),
+                    new TreeMap<>(failures));
+        }
+    }
 }
@@ -16,15 +16,23 @@
 package org.jboss.pnc.service.tracking.data.cassandra;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SocketOptions;
 import com.datastax.driver.core.policies.ConstantReconnectionPolicy;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -71,9 +79,22 @@ public class CassandraClient {
                 .withoutJMXReporting()
                 .withReconnectionPolicy(new ConstantReconnectionPolicy(config.getConstantDelayMs()))
                 .withRetryPolicy(new ConfigurableRetryPolicy(config.getReadRetries(), config.getWriteRetries()))
-                .addContactPoint(host)
+                .addContactPoints(getContactPoints(host))
                 .withPort(port)
-                .withSocketOptions(socketOptions);
+                .withSocketOptions(socketOptions)
+                .withPoolingOptions(getPoolingOptions())
+                .withCompression(getCompression())
+                .withLoadBalancingPolicy(getLoadBalancingPolicy());
+        if (config.getSpeculativeDelayMillis() > 0) {
+            logger.info(
+                    "Speculative executions of idempotent reads, delay: {}ms, max executions: {}",
+                    config.getSpeculativeDelayMillis(),
+                    config.getSpeculativeMaxExecutions());
+            builder.withSpeculativeExecutionPolicy(
+                    new ConstantSpeculativeExecutionPolicy(
+                            config.getSpeculativeDelayMillis(),
+                            config.getSpeculativeMaxExecutions()));
+        }
         username = config.getCassandraUser();
         String password = config.getCassandraPass();
         if (isNotBlank(username) && isNotBlank(password)) {
@@ -83,6 +104,45 @@ public class CassandraClient {
         cluster = builder.build();
     }
 
+    private static String[] getContactPoints(String hosts) {
+        return Arrays.stream(hosts.split(",")).map(String::trim).filter(h -> !h.isEmpty()).toArray(String[]::new);
+    }
+
+    private PoolingOptions getPoolingOptions() {
+        PoolingOptions poolingOptions = new PoolingOptions();
+        int maxConnections = config.getPoolMaxConnections();
+        if (maxConnections > 0) {
+            int coreConnections = Math.min(Math.max(config.getPoolCoreConnections(), 1), maxConnections);
+            poolingOptions.setConnectionsPerHost(HostDistance.LOCAL, coreConnections, maxConnections);
+        }
+        if (config.getPoolMaxRequestsPerConnection() > 0) {
+            poolingOptions.setMaxRequestsPerConnection(HostDistance.LOCAL, config.getPoolMaxRequestsPerConnection());
+        }
+        return poolingOptions;
+    }
+
+    /**
+     * LZ4 and Snappy need lz4-java and snappy-java on the classpath, both come with the Kafka client.
+     */
+    private ProtocolOptions.Compression getCompression() {
+        String compression = config.getCompression();
+        if (compression == null || compression.isBlank()) {
+            return ProtocolOptions.Compression.NONE;
+        }
+        return ProtocolOptions.Compression.valueOf(compression.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Route each request to a replica of its partition in the local datacenter, which saves the coordinator hop.
+     */
+    private TokenAwarePolicy getLoadBalancingPolicy() {
+        DCAwareRoundRobinPolicy.Builder dcAware = DCAwareRoundRobinPolicy.builder();
+        if (isNotBlank(config.getLocalDc())) {
+            dcAware.withLocalDc(config.getLocalDc());
+        }
+        return new TokenAwarePolicy(dcAware.build());
+    }
+
     public Session getSession(String keyspace) {
         if (!config.isEnabled()) {
             logger.info("Cassandra client not enabled");
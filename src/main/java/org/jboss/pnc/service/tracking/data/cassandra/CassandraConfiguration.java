@@ -15,6 +15,7 @@
  */
 package org.jboss.pnc.service.tracking.data.cassandra;
 
+import com.datastax.driver.core.ConsistencyLevel;
 import io.quarkus.runtime.Startup;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -32,6 +33,9 @@ public class CassandraConfiguration {
     @ConfigProperty(name = "cassandra.enabled", defaultValue = "false")
     Boolean enabled;
 
+    /**
+     * Contact points of the cluster, several hosts are separated by commas.
+     */
     @Inject
     @ConfigProperty(name = "cassandra.host", defaultValue = "localhost")
     String cassandraHost;
@@ -76,6 +80,151 @@ public class CassandraConfiguration {
     @ConfigProperty(name = "cassandra.keyspaceReplicas", defaultValue = "0")
     int keyspaceReplicas;
 
+    /**
+     * Rows fetched per page by the paged queries, 0 or less means the driver default.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.fetchSize", defaultValue = "1000")
+    int fetchSize;
+
+    /**
+     * Max statements in one unlogged single-partition batch.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.batch.maxStatements", defaultValue = "50")
+    int batchMaxStatements;
+
+    /**
+     * Max estimated bytes of one batch, keep it under the batch_size_fail_threshold of the servers.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.batch.maxBytes", defaultValue = "40960")
+    int batchMaxBytes;
+
+    /**
+     * Max batches of one write executed at the same time.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.batch.maxInFlight", defaultValue = "8")
+    int batchMaxInFlight;
+
+    /**
+     * Resolution of the access timestamps appended to a row, 0 or less keeps every timestamp. With a resolution the
+     * accesses falling into the same window are stored as one element, which bounds the size of the set of chatty
+     * builds to one element per window.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.timestamps.resolutionMillis", defaultValue = "0")
+    long timestampsResolutionMillis;
+
+    /**
+     * Max number of access timestamps kept per row, 0 or less keeps them all. A row over it keeps its first timestamp
+     * and the latest ones. Each instance trims a row once it appended that many timestamps to it, with one read of the
+     * row, and the seal trims all the rows of the record, so a sealed record never holds more.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.timestamps.max", defaultValue = "1000")
+    int timestampsMax;
+
+    /**
+     * Max connections to each host of the local datacenter, 0 or less means the driver default.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.pool.maxConnections", defaultValue = "0")
+    int poolMaxConnections;
+
+    /**
+     * Connections kept open to each host of the local datacenter, only used together with
+     * cassandra.pool.maxConnections.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.pool.coreConnections", defaultValue = "0")
+    int poolCoreConnections;
+
+    /**
+     * Max requests in flight on one connection to a host of the local datacenter, 0 or less means the driver default.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.pool.maxRequestsPerConnection", defaultValue = "0")
+    int poolMaxRequestsPerConnection;
+
+    /**
+     * Compression of the protocol frames: none, lz4 or snappy.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.compression", defaultValue = "none")
+    String compression;
+
+    /**
+     * Datacenter the requests are routed to, the driver uses the one of the contact points when it is not set.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.localDc")
+    Optional<String> localDc;
+
+    /**
+     * Delay before a read is sent again to another replica while the first one did not answer, 0 or less disables the
+     * speculative executions. Only the reads are marked idempotent, the writes are never executed twice.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.speculative.delayMillis", defaultValue = "0")
+    long speculativeDelayMillis;
+
+    /**
+     * Max speculative executions of one read on top of the first one.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.speculative.maxExecutions", defaultValue = "2")
+    int speculativeMaxExecutions;
+
+    /**
+     * Write every row to the records2_effects table as well, partitioned by effect, and read the entries of one effect
+     * from it once the existing records are copied. This doubles the writes of the ingest. Disabled, the entries of one
+     * effect are filtered out of the whole partition of the record. Once enabled keep it enabled: the rows written
+     * while it is disabled are missing from the effect table, so enabling it again requires to delete the
+     * records2_effects row of the migrations table to copy the records once more.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.effectsTable.enabled", defaultValue = "true")
+    boolean effectsTableEnabled;
+
+    /**
+     * Consistency of the writes of in-progress records, of the in-progress index, and of the sealed check done before
+     * each of these writes. Below QUORUM a write racing a seal may be accepted, the seal itself still holds.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.consistency.ingest", defaultValue = "QUORUM")
+    ConsistencyLevel ingestConsistency;
+
+    /**
+     * Consistency of the sealed markers, and of the writes and deletes of whole records by seal, import and admin
+     * operations. Keep it strong so that a sealed record is seen as sealed.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.consistency.seal", defaultValue = "QUORUM")
+    ConsistencyLevel sealConsistency;
+
+    /**
+     * Consistency of the reads of record content.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.consistency.report", defaultValue = "QUORUM")
+    ConsistencyLevel reportConsistency;
+
+    /**
+     * Consistency of the listings of tracking ids.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.consistency.ids", defaultValue = "QUORUM")
+    ConsistencyLevel idsConsistency;
+
+    /**
+     * Consistency of the checks whether a record exists and of its state.
+     */
+    @Inject
+    @ConfigProperty(name = "cassandra.consistency.exists", defaultValue = "QUORUM")
+    ConsistencyLevel existsConsistency;
+
     public CassandraConfiguration() {
     }
 
@@ -174,4 +323,156 @@ public class CassandraConfiguration {
     public void setKeyspaceReplicas(int keyspaceReplicas) {
         this.keyspaceReplicas = keyspaceReplicas;
     }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getBatchMaxStatements() {
+        return batchMaxStatements;
+    }
+
+    public void setBatchMaxStatements(int batchMaxStatements) {
+        this.batchMaxStatements = batchMaxStatements;
+    }
+
+    public int getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    public void setBatchMaxBytes(int batchMaxBytes) {
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public int getBatchMaxInFlight() {
+        return batchMaxInFlight;
+    }
+
+    public void setBatchMaxInFlight(int batchMaxInFlight) {
+        this.batchMaxInFlight = batchMaxInFlight;
+    }
+
+    public long getTimestampsResolutionMillis() {
+        return timestampsResolutionMillis;
+    }
+
+    public void setTimestampsResolutionMillis(long timestampsResolutionMillis) {
+        this.timestampsResolutionMillis = timestampsResolutionMillis;
+    }
+
+    public int getTimestampsMax() {
+        return timestampsMax;
+    }
+
+    public void setTimestampsMax(int timestampsMax) {
+        this.timestampsMax = timestampsMax;
+    }
+
+    public int getPoolMaxConnections() {
+        return poolMaxConnections;
+    }
+
+    public void setPoolMaxConnections(int poolMaxConnections) {
+        this.poolMaxConnections = poolMaxConnections;
+    }
+
+    public int getPoolCoreConnections() {
+        return poolCoreConnections;
+    }
+
+    public void setPoolCoreConnections(int poolCoreConnections) {
+        this.poolCoreConnections = poolCoreConnections;
+    }
+
+    public int getPoolMaxRequestsPerConnection() {
+        return poolMaxRequestsPerConnection;
+    }
+
+    public void setPoolMaxRequestsPerConnection(int poolMaxRequestsPerConnection) {
+        this.poolMaxRequestsPerConnection = poolMaxRequestsPerConnection;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public String getLocalDc() {
+        return localDc.orElse("");
+    }
+
+    public void setLocalDc(String localDc) {
+        this.localDc = of(localDc);
+    }
+
+    public long getSpeculativeDelayMillis() {
+        return speculativeDelayMillis;
+    }
+
+    public void setSpeculativeDelayMillis(long speculativeDelayMillis) {
+        this.speculativeDelayMillis = speculativeDelayMillis;
+    }
+
+    public int getSpeculativeMaxExecutions() {
+        return speculativeMaxExecutions;
+    }
+
+    public void setSpeculativeMaxExecutions(int speculativeMaxExecutions) {
+        this.speculativeMaxExecutions = speculativeMaxExecutions;
+    }
+
+    public boolean isEffectsTableEnabled() {
+        return effectsTableEnabled;
+    }
+
+    public void setEffectsTableEnabled(boolean effectsTableEnabled) {
+        this.effectsTableEnabled = effectsTableEnabled;
+    }
+
+    public ConsistencyLevel getIngestConsistency() {
+        return ingestConsistency;
+    }
+
+    public void setIngestConsistency(ConsistencyLevel ingestConsistency) {
+        this.ingestConsistency = ingestConsistency;
+    }
+
+    public ConsistencyLevel getSealConsistency() {
+        return sealConsistency;
+    }
+
+    public void setSealConsistency(ConsistencyLevel sealConsistency) {
+        this.sealConsistency = sealConsistency;
+    }
+
+    public ConsistencyLevel getReportConsistency() {
+        return reportConsistency;
+    }
+
+    public void setReportConsistency(ConsistencyLevel reportConsistency) {
+        this.reportConsistency = reportConsistency;
+    }
+
+    public ConsistencyLevel getIdsConsistency() {
+        return idsConsistency;
+    }
+
+    public void setIdsConsistency(ConsistencyLevel idsConsistency) {
+        this.idsConsistency = idsConsistency;
+    }
+
+    public ConsistencyLevel getExistsConsistency() {
+        return existsConsistency;
+    }
+
+    public void setExistsConsistency(ConsistencyLevel existsConsistency) {
+        this.existsConsistency = existsConsistency;
+    }
 }
@@ -15,12 +15,40 @@
  */
 package org.jboss.pnc.service.tracking.data.cassandra;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
 public class CassandraFoloUtil {
 
     public static final String TABLE_FOLO = "records2";
 
     public static final String TABLE_FOLO_LEGACY = "records";
 
+    public static final String TABLE_FOLO_EFFECTS = "records2_effects";
+
+    public static final String TABLE_FOLO_SEALED = "records2_sealed";
+
+    public static final String TABLE_FOLO_IDS = "records2_ids";
+
+    public static final String TABLE_FOLO_ID_BUCKETS = "records2_id_buckets";
+
+    public static final String TABLE_FOLO_KEY_BUCKETS = "records2_key_buckets";
+
+    public static final String TABLE_FOLO_PROMOTIONS = "records2_promotions";
+
+    public static final String TABLE_MIGRATIONS = "migrations";
+
+    public static final String STATE_IN_PROGRESS = "in_progress";
+
+    public static final String STATE_SEALED = "sealed";
+
+    /**
+     * Number of buckets the tracking keys of one day are spread over by their hash, so that the inserts of the keys
+     * and the deletes of their seals are not all piled up in one partition of the index.
+     */
+    public static final int BUCKET_SPREAD = 8;
+
     public static String getSchemaCreateTableFolo(String keySpace) {
         return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO + " (" + "tracking_key text,"
                 + "sealed boolean," + "store_key text," + "access_channel text," + "path text," + "origin_url text,"
@@ -37,4 +65,86 @@ public class CassandraFoloUtil {
                 + "timestamps set<bigint>," + "PRIMARY KEY ((tracking_key),store_key,path,store_effect)" + ");";
     }
 
+    /**
+     * Same rows as the records table, partitioned by tracking key and effect, so the uploads or the downloads of a
+     * record are read without scanning the rows of the other effect.
+     */
+    public static String getSchemaCreateTableFoloEffects(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_EFFECTS + " (" + "tracking_key text,"
+                + "sealed boolean," + "store_key text," + "access_channel text," + "path text," + "origin_url text,"
+                + "local_url text," + "store_effect text," + "md5 text," + "sha256 text," + "sha1 text,"
+                + "size bigint," + "started bigint," + "timestamps set<bigint>,"
+                + "PRIMARY KEY ((tracking_key,store_effect),store_key,path)" + ");";
+    }
+
+    /**
+     * One row per sealed tracking key, the presence of the row is the sealed state of the whole record.
+     */
+    public static String getSchemaCreateTableFoloSealed(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_SEALED + " (" + "tracking_key text,"
+                + "sealed_time bigint," + "PRIMARY KEY (tracking_key)" + ");";
+    }
+
+    /**
+     * Index of the tracking keys by state and time bucket, so that listing the keys reads only the index partitions
+     * instead of scanning all the records. See {@link #getBucket(long, String)} for the buckets.
+     */
+    public static String getSchemaCreateTableFoloIds(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_IDS + " (" + "state text," + "bucket int,"
+                + "tracking_key text," + "time bigint," + "PRIMARY KEY ((state,bucket),tracking_key)" + ");";
+    }
+
+    /**
+     * The buckets used by each state of the index.
+     */
+    public static String getSchemaCreateTableFoloIdBuckets(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_ID_BUCKETS + " (" + "state text,"
+                + "bucket int," + "PRIMARY KEY ((state),bucket)" + ");";
+    }
+
+    /**
+     * The in-progress buckets a tracking key was indexed in, used to remove it from them on seal and delete.
+     */
+    public static String getSchemaCreateTableFoloKeyBuckets(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_KEY_BUCKETS + " (" + "tracking_key text,"
+                + "buckets set<int>," + "PRIMARY KEY (tracking_key)" + ");";
+    }
+
+    /**
+     * The completed promotions of each tracking key by target store, taken from the promote complete events.
+     */
+    public static String getSchemaCreateTableFoloPromotions(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_FOLO_PROMOTIONS + " (" + "tracking_key text,"
+                + "target_store text," + "promote_id text," + "source_store text," + "paths set<text>,"
+                + "time bigint," + "PRIMARY KEY ((tracking_key),target_store,promote_id)" + ");";
+    }
+
+    /**
+     * Bucket of a tracking key in the index: the UTC day of the time (yyyyMMdd) times {@link #BUCKET_SPREAD}, plus the
+     * hash of the key modulo {@link #BUCKET_SPREAD}. The buckets sort by day.
+     */
+    public static int getBucket(long timeMillis, String trackingKey) {
+        return getFirstBucket(timeMillis) + Math.floorMod(trackingKey.hashCode(), BUCKET_SPREAD);
+    }
+
+    /**
+     * The lowest bucket of the day of the time.
+     */
+    public static int getFirstBucket(long timeMillis) {
+        ZonedDateTime time = Instant.ofEpochMilli(timeMillis).atZone(ZoneOffset.UTC);
+        return (time.getYear() * 10000 + time.getMonthValue() * 100 + time.getDayOfMonth()) * BUCKET_SPREAD;
+    }
+
+    /**
+     * The highest bucket of the day of the time.
+     */
+    public static int getLastBucket(long timeMillis) {
+        return getFirstBucket(timeMillis) + BUCKET_SPREAD - 1;
+    }
+
+    public static String getSchemaCreateTableMigrations(String keySpace) {
+        return "CREATE TABLE IF NOT EXISTS " + keySpace + "." + TABLE_MIGRATIONS + " (" + "name text,"
+                + "applied bigint," + "PRIMARY KEY (name)" + ");";
+    }
+
 }
@@ -16,13 +16,22 @@
 package org.jboss.pnc.service.tracking.data.cassandra;
 
 import com.datastax.driver.core.*;
-import com.datastax.driver.core.exceptions.NoHostAvailableException;
-import com.datastax.driver.mapping.Mapper;
-import com.datastax.driver.mapping.MappingManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
 
 import org.jboss.pnc.service.tracking.exception.ContentException;
 import org.jboss.pnc.service.tracking.exception.IndyLifecycleException;
 import org.jboss.pnc.service.tracking.exception.IndyWorkflowException;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
 import org.jboss.pnc.service.tracking.model.TrackedContent;
 import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
 import org.jboss.pnc.service.tracking.model.TrackingKey;
@@ -30,25 +39,95 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Base64;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static com.datastax.driver.core.ConsistencyLevel.QUORUM;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.STATE_IN_PROGRESS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.STATE_SEALED;
 import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_EFFECTS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_IDS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_ID_BUCKETS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_KEY_BUCKETS;
 import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_LEGACY;
-import static org.jboss.pnc.service.tracking.data.cassandra.DtxTrackingRecord.fromCassandraRow;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_PROMOTIONS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_SEALED;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_MIGRATIONS;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.getBucket;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.getFirstBucket;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.getLastBucket;
 
 @ApplicationScoped
 public class CassandraTrackingQuery {
-    private final static String DOWNLOADS = "DOWNLOAD";
-
-    private final static String UPLOADS = "UPLOAD";
+    /**
+     * Bytes counted for a row on top of its variable length columns, in the batch size estimate.
+     */
+    private final static int ROW_OVERHEAD_BYTES = 64;
+
+    private final static int APPENDED_ROWS_MAX = 100000;
+
+    /**
+     * Name of the one-time migration which copies the sealed flag of the existing records into the sealed marker
+     * table.
+     */
+    private final static String SEALED_MARKERS_MIGRATION = "records2_sealed_markers";
+
+    /**
+     * Name of the one-time migration which indexes the existing tracking keys by state and time bucket.
+     */
+    private final static String KEY_INDEX_MIGRATION = "records2_ids";
+
+    /**
+     * Name of the one-time migration which copies the existing records into the table partitioned by effect.
+     */
+    private final static String EFFECTS_MIGRATION = "records2_effects";
+
+    private final static int KEY_INDEX_WAIT_SECONDS = 10;
+
+    /**
+     * Seconds an instance holds the lease of a migration. The lease is not renewed: a migration running longer, or the
+     * one of an instance which died, is taken over by another instance once its lease expired, which is safe as the
+     * migrations are idempotent.
+     */
+    private final static int MIGRATION_LEASE_SECONDS = 3600;
+
+    /**
+     * Seconds between two checks of the migrations run by another instance, or between two attempts after a failure.
+     */
+    private final static int MIGRATION_POLL_SECONDS = 60;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -58,13 +137,51 @@ public class CassandraTrackingQuery {
     @Inject
     CassandraConfiguration config;
 
-    private Session session;
+    @Inject
+    SealedRecordCache sealedCache;
+
+    /**
+     * Keys this instance already put in the in-progress index, to index a key once rather than on every write.
+     */
+    @Inject
+    @CacheName("indexed-tracking-keys")
+    Cache indexedKeys;
+
+    @Inject
+    MeterRegistry registry;
+
+    private PartitionBatchWriter batchWriter;
+
+    private volatile Session session;
+
+    private final SessionRecoveryPolicy recoveryPolicy = new ReconnectOncePolicy();
 
-    private Mapper<DtxTrackingRecord> trackingMapper;
+    // timestamps appended by this instance to each row since it last trimmed the row, see trimAppendedAsync
+    private final com.github.benmanes.caffeine.cache.Cache<String, AtomicInteger> appendedTimestamps = Caffeine
+            .newBuilder()
+            .maximumSize(APPENDED_ROWS_MAX)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
 
-    private PreparedStatement getTrackingRecord;
+    private PreparedStatement insertTrackingRecord;
 
-    private PreparedStatement getTrackingKeys;
+    private PreparedStatement appendTrackingRecord;
+
+    private PreparedStatement insertEffectRecord;
+
+    private PreparedStatement appendEffectRecord;
+
+    private PreparedStatement getRowTimestamps;
+
+    private PreparedStatement removeTimestamps;
+
+    private PreparedStatement removeEffectTimestamps;
+
+    private PreparedStatement getEffectRecords;
+
+    private PreparedStatement deleteEffectRecords;
+
+    private PreparedStatement getTrackingRecordState;
 
     private PreparedStatement getLegacyTrackingKeys;
 
@@ -72,22 +189,117 @@ public class CassandraTrackingQuery {
 
     private PreparedStatement getLegacyTrackingRecordsByTrackingKey;
 
+    private PreparedStatement getTrackingRecordsByEffect;
+
     private PreparedStatement isTrackingRecordExist;
 
+    private PreparedStatement isLegacyTrackingRecordExist;
+
     private PreparedStatement deleteTrackingRecordsByTrackingKey;
 
+    private PreparedStatement getSealedMarker;
+
+    private PreparedStatement checkSealedMarker;
+
+    private PreparedStatement insertSealedMarker;
+
+    private PreparedStatement deleteSealedMarker;
+
+    private PreparedStatement getSealedStateOfAllRecords;
+
+    private PreparedStatement getMigration;
+
+    private PreparedStatement insertMigration;
+
+    private PreparedStatement acquireMigrationLease;
+
+    private PreparedStatement releaseMigrationLease;
+
+    private PreparedStatement insertIndexedKey;
+
+    private PreparedStatement deleteIndexedKey;
+
+    private PreparedStatement getIndexedKeys;
+
+    private PreparedStatement getIndexedKeysAfter;
+
+    private PreparedStatement insertIndexBucket;
+
+    private PreparedStatement getIndexBuckets;
+
+    private PreparedStatement addKeyBucket;
+
+    private PreparedStatement getKeyBuckets;
+
+    private PreparedStatement deleteKeyBuckets;
+
+    private PreparedStatement addPromotion;
+
+    private PreparedStatement getPromotion;
+
+    /**
+     * Whether the sealed marker table covers all the records sealed before it was introduced. Until then the sealed
+     * state falls back to the flag of the record rows.
+     */
+    private volatile boolean sealedMarkersMigrated;
+
+    /**
+     * Whether the tracking key index covers the records written before it was introduced. Until then the keys are
+     * listed by scanning the records.
+     */
+    private volatile boolean keyIndexMigrated;
+
+    /**
+     * Whether the effect table is enabled and covers the records written before it was introduced. Until then the
+     * entries of one effect are filtered from the records table.
+     */
+    private volatile boolean effectsMigrated;
+
+    private final AtomicBoolean migrationsStarted = new AtomicBoolean();
+
+    private volatile CompletableFuture<Void> migrations = CompletableFuture.completedFuture(null);
+
+    private ScheduledExecutorService migrationExecutor;
+
+    // replaces a lost session for the async queries, off the driver I/O threads their callbacks run on
+    private final ExecutorService reconnectExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tracking-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public CassandraTrackingQuery() {
     }
 
-    public CassandraTrackingQuery(CassandraClient client, CassandraConfiguration config) {
+    public CassandraTrackingQuery(
+            CassandraClient client,
+            CassandraConfiguration config,
+            SealedRecordCache sealedCache) {
         this.client = client;
         this.config = config;
+        this.sealedCache = sealedCache;
         init();
     }
 
     @PostConstruct
     public void init() {
+        initSession();
+        startMigrations();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (migrationExecutor != null) {
+            migrationExecutor.shutdownNow();
+        }
+        reconnectExecutor.shutdownNow();
+    }
 
+    /**
+     * Open the session, create the schema and prepare the statements. Also called to replace a lost session, which
+     * does not start the migrations again.
+     */
+    private void initSession() {
         String keySpace = config.getKeyspace();
 
         session = client.getSession(keySpace);
@@ -95,96 +307,482 @@ public class CassandraTrackingQuery {
         session.execute(SchemaUtils.getSchemaCreateKeyspace(keySpace, config.getKeyspaceReplicas()));
         session.execute(CassandraFoloUtil.getSchemaCreateTableFolo(keySpace));
         session.execute(CassandraFoloUtil.getSchemaCreateTableFoloLegacy(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloEffects(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloSealed(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloIds(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloIdBuckets(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloKeyBuckets(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableFoloPromotions(keySpace));
+        session.execute(CassandraFoloUtil.getSchemaCreateTableMigrations(keySpace));
+
+        insertTrackingRecord = session.prepare(
+                "INSERT INTO " + keySpace + "." + TABLE_FOLO
+                        + " (tracking_key, sealed, store_key, access_channel, path, origin_url, local_url,"
+                        + " store_effect, md5, sha256, sha1, size, started, timestamps)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
+        insertTrackingRecord.setConsistencyLevel(config.getSealConsistency());
+
+        appendTrackingRecord = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO
+                        + " SET sealed=?, access_channel=?, origin_url=?, local_url=?, md5=?, sha256=?, sha1=?,"
+                        + " size=?, started=?, timestamps = timestamps + ?"
+                        + " WHERE tracking_key=? AND store_key=? AND path=? AND store_effect=?;");
+        appendTrackingRecord.setConsistencyLevel(config.getIngestConsistency());
+
+        // same bind order as the statements of the records table
+        insertEffectRecord = session.prepare(
+                "INSERT INTO " + keySpace + "." + TABLE_FOLO_EFFECTS
+                        + " (tracking_key, sealed, store_key, access_channel, path, origin_url, local_url,"
+                        + " store_effect, md5, sha256, sha1, size, started, timestamps)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
+        insertEffectRecord.setConsistencyLevel(config.getSealConsistency());
+
+        appendEffectRecord = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO_EFFECTS
+                        + " SET sealed=?, access_channel=?, origin_url=?, local_url=?, md5=?, sha256=?, sha1=?,"
+                        + " size=?, started=?, timestamps = timestamps + ?"
+                        + " WHERE tracking_key=? AND store_key=? AND path=? AND store_effect=?;");
+        appendEffectRecord.setConsistencyLevel(config.getIngestConsistency());
 
-        MappingManager manager = new MappingManager(session);
+        getRowTimestamps = session.prepare(
+                "SELECT timestamps FROM " + keySpace + "." + TABLE_FOLO
+                        + " WHERE tracking_key=? AND store_key=? AND path=? AND store_effect=?;");
+        getRowTimestamps.setConsistencyLevel(config.getIngestConsistency());
 
-        trackingMapper = manager.mapper(DtxTrackingRecord.class, keySpace);
+        removeTimestamps = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO + " SET timestamps = timestamps - ?"
+                        + " WHERE tracking_key=? AND store_key=? AND path=? AND store_effect=?;");
+        removeTimestamps.setConsistencyLevel(config.getIngestConsistency());
 
-        getTrackingRecord = session.prepare(
-                "SELECT * FROM " + keySpace + "." + TABLE_FOLO
+        removeEffectTimestamps = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO_EFFECTS + " SET timestamps = timestamps - ?"
                         + " WHERE tracking_key=? AND store_key=? AND path=? AND store_effect=?;");
-        getTrackingRecord.setConsistencyLevel(QUORUM);
+        removeEffectTimestamps.setConsistencyLevel(config.getIngestConsistency());
+
+        getEffectRecords = session.prepare(
+                "SELECT * FROM " + keySpace + "." + TABLE_FOLO_EFFECTS + " WHERE tracking_key=? AND store_effect=?;");
+        getEffectRecords.setConsistencyLevel(config.getReportConsistency());
+
+        deleteEffectRecords = session.prepare(
+                "DELETE FROM " + keySpace + "." + TABLE_FOLO_EFFECTS + " WHERE tracking_key=? AND store_effect IN ?;");
+        deleteEffectRecords.setConsistencyLevel(config.getSealConsistency());
 
-        getTrackingKeys = session.prepare("SELECT distinct tracking_key FROM " + keySpace + "." + TABLE_FOLO + ";");
-        getTrackingKeys.setConsistencyLevel(QUORUM);
+        getTrackingRecordState = session.prepare(
+                "SELECT sealed FROM " + keySpace + "." + TABLE_FOLO + " WHERE tracking_key=? LIMIT 1;");
+        getTrackingRecordState.setConsistencyLevel(config.getExistsConsistency());
 
         getLegacyTrackingKeys = session
                 .prepare("SELECT distinct tracking_key FROM " + keySpace + "." + TABLE_FOLO_LEGACY + ";");
+        getLegacyTrackingKeys.setConsistencyLevel(config.getIdsConsistency());
 
         getTrackingRecordsByTrackingKey = session
                 .prepare("SELECT * FROM " + keySpace + "." + TABLE_FOLO + " WHERE tracking_key=?;");
-        getTrackingRecordsByTrackingKey.setConsistencyLevel(QUORUM);
+        getTrackingRecordsByTrackingKey.setConsistencyLevel(config.getReportConsistency());
 
         getLegacyTrackingRecordsByTrackingKey = session
                 .prepare("SELECT * FROM " + keySpace + "." + TABLE_FOLO_LEGACY + " WHERE tracking_key=?;");
-        getLegacyTrackingRecordsByTrackingKey.setConsistencyLevel(QUORUM);
+        getLegacyTrackingRecordsByTrackingKey.setConsistencyLevel(config.getReportConsistency());
+
+        // the filtering is limited to the rows of one partition
+        getTrackingRecordsByEffect = session.prepare(
+                "SELECT * FROM " + keySpace + "." + TABLE_FOLO
+                        + " WHERE tracking_key=? AND store_effect=? ALLOW FILTERING;");
+        getTrackingRecordsByEffect.setConsistencyLevel(config.getReportConsistency());
 
-        isTrackingRecordExist = session
-                .prepare("SELECT count(*) FROM " + keySpace + "." + TABLE_FOLO + " WHERE tracking_key=?;");
+        isTrackingRecordExist = session.prepare(
+                "SELECT tracking_key FROM " + keySpace + "." + TABLE_FOLO + " WHERE tracking_key=? LIMIT 1;");
+        isTrackingRecordExist.setConsistencyLevel(config.getExistsConsistency());
+
+        isLegacyTrackingRecordExist = session.prepare(
+                "SELECT tracking_key FROM " + keySpace + "." + TABLE_FOLO_LEGACY + " WHERE tracking_key=? LIMIT 1;");
+        isLegacyTrackingRecordExist.setConsistencyLevel(config.getExistsConsistency());
 
         deleteTrackingRecordsByTrackingKey = session
                 .prepare("DELETE FROM " + keySpace + "." + TABLE_FOLO + " WHERE tracking_key=?;");
-        deleteTrackingRecordsByTrackingKey.setConsistencyLevel(QUORUM);
+        deleteTrackingRecordsByTrackingKey.setConsistencyLevel(config.getSealConsistency());
+
+        getSealedMarker = session
+                .prepare("SELECT sealed_time FROM " + keySpace + "." + TABLE_FOLO_SEALED + " WHERE tracking_key=?;");
+        getSealedMarker.setConsistencyLevel(config.getSealConsistency());
+
+        // the check before each ingest write, at the consistency of the write it guards
+        checkSealedMarker = session
+                .prepare("SELECT sealed_time FROM " + keySpace + "." + TABLE_FOLO_SEALED + " WHERE tracking_key=?;");
+        checkSealedMarker.setConsistencyLevel(config.getIngestConsistency());
+
+        insertSealedMarker = session.prepare(
+                "INSERT INTO " + keySpace + "." + TABLE_FOLO_SEALED + " (tracking_key, sealed_time) VALUES (?, ?);");
+        insertSealedMarker.setConsistencyLevel(config.getSealConsistency());
+
+        deleteSealedMarker = session
+                .prepare("DELETE FROM " + keySpace + "." + TABLE_FOLO_SEALED + " WHERE tracking_key=?;");
+        deleteSealedMarker.setConsistencyLevel(config.getSealConsistency());
+
+        getSealedStateOfAllRecords = session.prepare(
+                "SELECT tracking_key, sealed, writetime(sealed) FROM " + keySpace + "." + TABLE_FOLO
+                        + " PER PARTITION LIMIT 1;");
+        getSealedStateOfAllRecords.setConsistencyLevel(config.getIdsConsistency());
+
+        getMigration = session.prepare("SELECT applied FROM " + keySpace + "." + TABLE_MIGRATIONS + " WHERE name=?;");
+        getMigration.setConsistencyLevel(QUORUM);
+
+        insertMigration = session
+                .prepare("INSERT INTO " + keySpace + "." + TABLE_MIGRATIONS + " (name, applied) VALUES (?, ?);");
+        insertMigration.setConsistencyLevel(QUORUM);
+
+        acquireMigrationLease = session.prepare(
+                "INSERT INTO " + keySpace + "." + TABLE_MIGRATIONS + " (name, applied) VALUES (?, ?) IF NOT EXISTS"
+                        + " USING TTL " + MIGRATION_LEASE_SECONDS + ";");
+        acquireMigrationLease.setConsistencyLevel(QUORUM);
+
+        releaseMigrationLease = session
+                .prepare("DELETE FROM " + keySpace + "." + TABLE_MIGRATIONS + " WHERE name=? IF EXISTS;");
+        releaseMigrationLease.setConsistencyLevel(QUORUM);
+
+        insertIndexedKey = session.prepare(
+                "INSERT INTO " + keySpace + "." + TABLE_FOLO_IDS
+                        + " (state, bucket, tracking_key, time) VALUES (?, ?, ?, ?);");
+        insertIndexedKey.setConsistencyLevel(config.getIngestConsistency());
+
+        deleteIndexedKey = session.prepare(
+                "DELETE FROM " + keySpace + "." + TABLE_FOLO_IDS + " WHERE state=? AND bucket=? AND tracking_key=?;");
+        deleteIndexedKey.setConsistencyLevel(config.getSealConsistency());
+
+        getIndexedKeys = session.prepare(
+                "SELECT tracking_key, time FROM " + keySpace + "." + TABLE_FOLO_IDS + " WHERE state=? AND bucket=?;");
+        getIndexedKeys.setConsistencyLevel(config.getIdsConsistency());
+
+        getIndexedKeysAfter = session.prepare(
+                "SELECT tracking_key, time FROM " + keySpace + "." + TABLE_FOLO_IDS
+                        + " WHERE state=? AND bucket=? AND tracking_key>?;");
+        getIndexedKeysAfter.setConsistencyLevel(config.getIdsConsistency());
+
+        insertIndexBucket = session
+                .prepare("INSERT INTO " + keySpace + "." + TABLE_FOLO_ID_BUCKETS + " (state, bucket) VALUES (?, ?);");
+        insertIndexBucket.setConsistencyLevel(config.getIngestConsistency());
+
+        getIndexBuckets = session
+                .prepare("SELECT bucket FROM " + keySpace + "." + TABLE_FOLO_ID_BUCKETS + " WHERE state=?;");
+        getIndexBuckets.setConsistencyLevel(config.getIdsConsistency());
+
+        addKeyBucket = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO_KEY_BUCKETS
+                        + " SET buckets = buckets + ? WHERE tracking_key=?;");
+        addKeyBucket.setConsistencyLevel(config.getIngestConsistency());
+
+        getKeyBuckets = session
+                .prepare("SELECT buckets FROM " + keySpace + "." + TABLE_FOLO_KEY_BUCKETS + " WHERE tracking_key=?;");
+        getKeyBuckets.setConsistencyLevel(config.getSealConsistency());
+
+        deleteKeyBuckets = session
+                .prepare("DELETE FROM " + keySpace + "." + TABLE_FOLO_KEY_BUCKETS + " WHERE tracking_key=?;");
+        deleteKeyBuckets.setConsistencyLevel(config.getSealConsistency());
+
+        addPromotion = session.prepare(
+                "UPDATE " + keySpace + "." + TABLE_FOLO_PROMOTIONS
+                        + " SET source_store=?, time=?, paths = paths + ?"
+                        + " WHERE tracking_key=? AND target_store=? AND promote_id=?;");
+        addPromotion.setConsistencyLevel(config.getIngestConsistency());
+
+        getPromotion = session.prepare(
+                "SELECT promote_id FROM " + keySpace + "." + TABLE_FOLO_PROMOTIONS
+                        + " WHERE tracking_key=? AND target_store=? LIMIT 1;");
+        getPromotion.setConsistencyLevel(config.getExistsConsistency());
+
+        // the reads can be executed more than once, which allows the speculative executions of the client for them
+        for (PreparedStatement read : Arrays.asList(
+                getTrackingRecordState,
+                getLegacyTrackingKeys,
+                getTrackingRecordsByTrackingKey,
+                getLegacyTrackingRecordsByTrackingKey,
+                getTrackingRecordsByEffect,
+                getEffectRecords,
+                isTrackingRecordExist,
+                isLegacyTrackingRecordExist,
+                getSealedMarker,
+                checkSealedMarker,
+                getSealedStateOfAllRecords,
+                getMigration,
+                getIndexedKeys,
+                getIndexedKeysAfter,
+                getIndexBuckets,
+                getKeyBuckets,
+                getPromotion)) {
+            read.setIdempotent(true);
+        }
 
         logger.info("-- Cassandra Folo Records Keyspace and Tables created");
+
+        batchWriter = new PartitionBatchWriter(
+                this::executeSessionAsync,
+                QUORUM,
+                config,
+                registry == null ? Metrics.globalRegistry : registry);
     }
 
     public boolean recordArtifact(TrackedContentEntry entry) throws ContentException, IndyWorkflowException {
+        await(recordArtifactAsync(entry));
+        return true;
+    }
+
+    /**
+     * Non-blocking variant of {@link #recordArtifact(TrackedContentEntry)}. The stage fails with a
+     * {@link ContentException} if the record is already sealed.
+     */
+    public CompletionStage<Void> recordArtifactAsync(TrackedContentEntry entry) {
+        // Some builds may upload an artifact more than once, the other columns are overridden by the last write while
+        // the timestamps are appended to the ones of the previous writes
+        DtxTrackingRecord record = new DtxTrackingRecord(entry);
+        Statement insert = bindAppend(appendTrackingRecord, record);
+        Statement insertEffect = config.isEffectsTableEnabled() ? bindAppend(appendEffectRecord, record) : null;
+        return checkNotSealed(entry.getTrackingKey()).thenCompose(
+                v -> executeSessionAsync(insert)
+                        .thenCombine(
+                                insertEffect == null ? CompletableFuture.completedFuture(null)
+                                        : executeSessionAsync(insertEffect),
+                                (w, e) -> null)
+                        .thenCombine(indexInProgress(entry.getTrackingKey()), (w, i) -> null)
+                        .thenCompose(w -> trimAppendedAsync(Collections.singletonList(record))));
+    }
 
-        String buildId = entry.getTrackingKey().getId();
-        String storeKey = entry.getStoreKey().toString();
-        String path = entry.getPath();
-        String effect = entry.getEffect().toString();
+    public void recordArtifacts(TrackingKey trackingKey, Collection<TrackedContentEntry> entries)
+            throws ContentException {
+        await(recordArtifactsAsync(trackingKey, entries));
+    }
 
-        BoundStatement bind = getTrackingRecord.bind(buildId, storeKey, path, effect);
-        ResultSet trackingRecord = executeSession(bind);
-        Row one = trackingRecord.one();
+    /**
+     * Record a group of entries which all belong to the same tracking key. The sealed state is checked once for the
+     * whole group, and the rows are written with single-partition UNLOGGED batches which are all in flight at the same
+     * time, so the group costs a couple of round trips instead of a read and a write per entry. Entries pointing to
+     * the same row are merged beforehand. The stage fails with a {@link ContentException} if the record is already
+     * sealed.
+     */
+    public CompletionStage<Void> recordArtifactsAsync(
+            TrackingKey trackingKey,
+            Collection<TrackedContentEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        if (one != null) {
-            DtxTrackingRecord dtxTrackingRecord = fromCassandraRow(one);
-            Boolean state = dtxTrackingRecord.getState();
-            if (state) {
-                throw new ContentException("Tracking record: {} is already sealed!", entry.getTrackingKey());
+        Map<String, DtxTrackingRecord> rows = new LinkedHashMap<>();
+        for (TrackedContentEntry entry : entries) {
+            DtxTrackingRecord record = new DtxTrackingRecord(entry);
+            String rowKey = record.getStoreKey() + "|" + record.getPath() + "|" + record.getStoreEffect();
+            DtxTrackingRecord prev = rows.put(rowKey, record);
+            if (prev != null) {
+                Set<Long> timestamps = new HashSet<>(prev.getTimestamps());
+                timestamps.addAll(record.getTimestamps());
+                record.setTimestamps(timestamps);
             }
         }
-        // Always override prev one since some builds may upload artifact more than once
-        DtxTrackingRecord dtxTrackingRecord = new DtxTrackingRecord(entry);
-        trackingMapper.save(dtxTrackingRecord); // optional Options with TTL, timestamp...
-        return true;
+
+        logger.trace("Recording {} rows from {} entries for: {}", rows.size(), entries.size(), trackingKey);
+        return checkNotSealed(trackingKey).thenCompose(
+                v -> appendInBatchesAsync(rows.values()).thenCombine(indexInProgress(trackingKey), (w, i) -> null)
+                        .thenCompose(w -> trimAppendedAsync(rows.values())));
     }
 
     public void delete(TrackingKey key) {
         logger.info("Delete tracking records, tracking_id: {}", key.getId());
         BoundStatement bind = deleteTrackingRecordsByTrackingKey.bind(key.getId());
         executeSession(bind);
+        executeSession(
+                deleteEffectRecords.bind(
+                        key.getId(),
+                        Arrays.stream(StoreEffect.values()).map(StoreEffect::name).collect(Collectors.toList())));
+        Row marker = executeSession(getSealedMarker.bind(key.getId())).one();
+        if (marker != null) {
+            executeSession(
+                    deleteIndexedKey
+                            .bind(STATE_SEALED, getBucket(marker.getLong("sealed_time"), key.getId()), key.getId()));
+        }
+        removeFromInProgressIndex(key);
+        executeSession(deleteSealedMarker.bind(key.getId()));
+        sealedCache.invalidate(key);
+    }
+
+    /**
+     * Check the sealed state with a single-row lookup of the sealed marker instead of reading the record rows. The
+     * flag of the record rows is only consulted while the markers of the old records are not migrated yet.
+     */
+    public boolean isSealed(TrackingKey trackingKey) {
+        return join(isSealedAsync(trackingKey));
+    }
+
+    public CompletionStage<Boolean> isSealedAsync(TrackingKey trackingKey) {
+        return isSealedAsync(trackingKey, getSealedMarker);
+    }
+
+    private CompletionStage<Boolean> isSealedAsync(TrackingKey trackingKey, PreparedStatement markerQuery) {
+        if (sealedCache.isSealed(trackingKey)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return executeSessionAsync(markerQuery.bind(trackingKey.getId())).thenCompose(marker -> {
+            boolean sealed = marker.one() != null;
+            if (sealed || sealedMarkersMigrated) {
+                return CompletableFuture.completedFuture(sealed);
+            }
+            return executeSessionAsync(getTrackingRecordState.bind(trackingKey.getId())).thenApply(rs -> {
+                Row one = rs.one();
+                return one != null && one.getBool("sealed");
+            });
+        }).thenApply(sealed -> {
+            if (sealed) {
+                sealedCache.setSealed(trackingKey);
+            }
+            return sealed;
+        });
+    }
+
+    /**
+     * The sealed check of the ingest writes. It reads the marker at the ingest consistency rather than the seal one, so
+     * lowering cassandra.consistency.ingest lowers the cost of the whole ingest path, the check included. A key found
+     * not sealed is not read again until its unsealed-tracking-keys entry expires, see SealedRecordCache.
+     */
+    private CompletionStage<Void> checkNotSealed(TrackingKey trackingKey) {
+        // a check which read the marker before a seal of this instance may cache the key as unsealed after it
+        if (sealedCache.isUnsealed(trackingKey) && !sealedCache.isSealed(trackingKey)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return isSealedAsync(trackingKey, checkSealedMarker).thenApply(sealed -> {
+            if (sealed) {
+                throw new CompletionException(
+                        new ContentException("Tracking record: {} is already sealed!", trackingKey));
+            }
+            sealedCache.setUnsealed(trackingKey);
+            return null;
+        });
     }
 
     public void replaceTrackingRecord(TrackedContent record) {
         saveTrackedContentRecords(record);
+        sealedCache.invalidateRecord(record.getKey());
     }
 
+    /**
+     * Whether the record has any row or is sealed. Reads at most one row, unlike the report queries.
+     */
     public boolean hasRecord(TrackingKey key) {
-        BoundStatement bind = isTrackingRecordExist.bind(key);
-        ResultSet result = executeSession(bind);
-        Row row = result.one();
-        boolean exists = false;
-        if (row != null) {
-            long count = row.get(0, Long.class);
-            exists = count > 0;
-        }
+        boolean exists = executeSession(isTrackingRecordExist.bind(key.getId())).one() != null || isSealed(key);
         logger.trace("{} {}", key, (exists ? "exists" : "not exists"));
         return exists;
     }
 
+    /**
+     * Record a completed promotion of the content of a tracking key. The paths are appended, so the same promotion can
+     * be recorded again.
+     */
+    public CompletionStage<Void> recordPromotionAsync(
+            TrackingKey key,
+            String promoteId,
+            StoreKey source,
+            StoreKey target,
+            Set<String> paths) {
+        BoundStatement bind = addPromotion.bind(
+                source == null ? null : source.toString(),
+                System.currentTimeMillis(),
+                paths == null ? Collections.emptySet() : paths,
+                key.getId(),
+                target.toString(),
+                promoteId == null ? "" : promoteId);
+        return executeSessionAsync(bind).thenApply(rs -> null);
+    }
+
+    /**
+     * Whether a promotion of the content of the tracking key to the target store was recorded.
+     */
+    public boolean isPromotedTo(TrackingKey key, StoreKey target) {
+        return executeSession(getPromotion.bind(key.getId(), target.toString())).one() != null;
+    }
+
+    public boolean hasLegacyRecord(TrackingKey key) {
+        return executeSession(isLegacyTrackingRecordExist.bind(key.getId())).one() != null;
+    }
+
     public TrackedContent get(TrackingKey key) {
+        TrackedContent cached = sealedCache.getRecord(key);
+        if (cached != null) {
+            return cached;
+        }
         List<DtxTrackingRecord> trackingRecords = getDtxTrackingRecordsFromDb(key);
         if (trackingRecords == null || trackingRecords.isEmpty()) {
             return null;
         }
-        return transformDtxTrackingRecordToTrackingContent(key, trackingRecords);
+        TrackedContent content = transformDtxTrackingRecordToTrackingContent(key, trackingRecords);
+        if (isSealed(key)) {
+            sealedCache.putRecord(content);
+        }
+        return content;
+    }
+
+    /**
+     * Lazily read the entries of one effect of a record. The rows are fetched page by page while the iterator
+     * advances, so the memory used does not depend on the size of the record. Entries come in the clustering order of
+     * the table, i.e. by store key and path. Only the partition of the effect is read, unless the effect table is not
+     * migrated yet. A cached sealed record is served from the cache.
+     */
+    public Iterator<TrackedContentEntry> iterateEntries(TrackingKey trackingKey, StoreEffect effect) {
+        TrackedContent cached = sealedCache.getRecord(trackingKey);
+        if (cached != null) {
+            return (effect == StoreEffect.UPLOAD ? cached.getUploads() : cached.getDownloads()).iterator();
+        }
+        BoundStatement bind = (effectsMigrated ? getEffectRecords : getTrackingRecordsByEffect)
+                .bind(trackingKey.getId(), effect.name());
+        bind.setFetchSize(config.getFetchSize());
+        ResultSet resultSet = executeSession(bind);
+        return StreamSupport.stream(resultSet.spliterator(), false)
+                .map(row -> DtxTrackingRecord.toTrackingContentEntry(toDtxTrackingRecord(row)))
+                .iterator();
+    }
+
+    /**
+     * Lazily read all the entries of a record, each one carrying its effect. Once the effect table is migrated the
+     * uploads are read then the downloads, each from its own partition. Before, the partition of the record is paged
+     * once, in the order of store key and path, instead of being filtered once per effect.
+     */
+    public Iterator<TrackedContentEntry> iterateEntries(TrackingKey trackingKey) {
+        TrackedContent cached = sealedCache.getRecord(trackingKey);
+        if (cached != null || effectsMigrated) {
+            return Iterators.concat(
+                    iterateEntries(trackingKey, StoreEffect.UPLOAD),
+                    iterateEntries(trackingKey, StoreEffect.DOWNLOAD));
+        }
+        BoundStatement bind = getTrackingRecordsByTrackingKey.bind(trackingKey.getId());
+        bind.setFetchSize(config.getFetchSize());
+        ResultSet resultSet = executeSession(bind);
+        return StreamSupport.stream(resultSet.spliterator(), false)
+                .map(row -> DtxTrackingRecord.toTrackingContentEntry(toDtxTrackingRecord(row)))
+                .iterator();
+    }
+
+    /**
+     * The uploads and the downloads of a record, to render both. Once the effect table is migrated each one is paged
+     * from its own partition. Before, the record is read once and split by effect in memory, as filtering its
+     * partition once per effect would scan it twice.
+     */
+    public Map<StoreEffect, Iterator<TrackedContentEntry>> iterateEntriesByEffect(TrackingKey trackingKey) {
+        Map<StoreEffect, Iterator<TrackedContentEntry>> byEffect = new EnumMap<>(StoreEffect.class);
+        if (effectsMigrated || sealedCache.getRecord(trackingKey) != null) {
+            for (StoreEffect effect : StoreEffect.values()) {
+                byEffect.put(effect, iterateEntries(trackingKey, effect));
+            }
+            return byEffect;
+        }
+        Map<StoreEffect, List<TrackedContentEntry>> entries = new EnumMap<>(StoreEffect.class);
+        for (StoreEffect effect : StoreEffect.values()) {
+            entries.put(effect, new ArrayList<>());
+        }
+        iterateEntries(trackingKey).forEachRemaining(entry -> entries.get(entry.getEffect()).add(entry));
+        entries.forEach((effect, list) -> byEffect.put(effect, list.iterator()));
+        return byEffect;
     }
 
     public TrackedContent seal(TrackingKey trackingKey) {
+        TrackedContent cached = sealedCache.getRecord(trackingKey);
+        if (cached != null) {
+            logger.debug("Tracking record: {} already sealed! Returning cached record.", trackingKey);
+            return cached;
+        }
         List<DtxTrackingRecord> trackingRecords = getDtxTrackingRecordsFromDb(trackingKey);
 
         if (trackingRecords == null || trackingRecords.isEmpty()) {
@@ -192,26 +790,188 @@ public class CassandraTrackingQuery {
             return new TrackedContent(trackingKey, new HashSet<>(), new HashSet<>());
         }
 
-        DtxTrackingRecord recordCheck = trackingRecords.get(0);
-        if (recordCheck.getState()) {
-            logger.debug("Tracking record: {} already sealed! Returning sealed record.", trackingKey);
-            return transformDtxTrackingRecordToTrackingContent(trackingKey, trackingRecords);
-        }
         logger.debug("Sealing record for: {}", trackingKey);
-        for (DtxTrackingRecord record : trackingRecords) {
-            record.setState(true);
-            trackingMapper.save(record);
-        }
-        return transformDtxTrackingRecordToTrackingContent(trackingKey, trackingRecords);
+        // the marker alone seals the record, whatever its size. The sealed column of the rows is left as written and
+        // only read for records sealed before the markers existed, until migrateSealedMarkers converted them.
+        markSealed(trackingKey);
+        join(trimSealedAsync(trackingRecords));
+        return cacheSealedRecord(transformDtxTrackingRecordToTrackingContent(trackingKey, trackingRecords));
     }
 
     public Set<TrackingKey> getInProgressTrackingKey() {
-        throw new UnsupportedOperationException(
-                "Getting in-progress tracking keys are not supported by Cassandra Folo");
+        return getIndexedTrackingKeys(STATE_IN_PROGRESS);
     }
 
     public Set<TrackingKey> getSealedTrackingKey() {
-        return getTrackingKeys();
+        return getIndexedTrackingKeys(STATE_SEALED);
+    }
+
+    /**
+     * List the keys of a state from the index, reading only its buckets. While the index is not migrated yet the
+     * records are scanned instead.
+     */
+    private Set<TrackingKey> getIndexedTrackingKeys(String state) {
+        Set<TrackingKey> trackingKeys = new HashSet<>();
+        if (!keyIndexMigrated) {
+            boolean sealed = STATE_SEALED.equals(state);
+            for (Row row : executeSession(getSealedStateOfAllRecords.bind())) {
+                TrackingKey trackingKey = new TrackingKey(row.getString("tracking_key"));
+                // the row flag is not set by seal any more, the marker tells
+                if ((row.getBool("sealed") || isSealed(trackingKey)) == sealed) {
+                    trackingKeys.add(trackingKey);
+                }
+            }
+            return trackingKeys;
+        }
+        for (Row bucket : executeSession(getIndexBuckets.bind(state))) {
+            BoundStatement bind = getIndexedKeys.bind(state, bucket.getInt("bucket"));
+            bind.setFetchSize(config.getFetchSize());
+            for (Row row : executeSession(bind)) {
+                trackingKeys.add(new TrackingKey(row.getString("tracking_key")));
+            }
+        }
+        return trackingKeys;
+    }
+
+    /**
+     * Read one page of the tracking key index, walking the given states in order and their buckets from the oldest.
+     * The since/until filters (epoch millis, inclusive) apply to the indexed time, i.e. the seal time of sealed keys
+     * and the first record time of in-progress ones; buckets out of the range are skipped without being read.
+     *
+     * @param pageToken the token returned with the previous page, or null to start from the beginning
+     * @throws IllegalArgumentException if the page token is malformed
+     * @throws IllegalStateException if the index is not migrated yet
+     */
+    public TrackingKeyPage getTrackingKeyPage(
+            List<String> states,
+            String pageToken,
+            int limit,
+            Long since,
+            Long until) {
+        requireKeyIndex();
+
+        String resumeState = null;
+        int resumeBucket = 0;
+        PagingState resumePaging = null;
+        if (pageToken != null) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(pageToken), UTF_8).split(",", -1);
+                resumeState = parts[0];
+                resumeBucket = Integer.parseInt(parts[1]);
+                resumePaging = parts[2].isEmpty() ? null : PagingState.fromString(parts[2]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken, e);
+            }
+            if (!states.contains(resumeState)) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken);
+            }
+        }
+
+        TrackingKeyPage page = new TrackingKeyPage();
+        int firstState = resumeState == null ? 0 : states.indexOf(resumeState);
+        for (String state : states.subList(firstState, states.size())) {
+            for (Row bucketRow : executeSession(getIndexBuckets.bind(state))) {
+                int bucket = bucketRow.getInt("bucket");
+                if ((since != null && bucket < getFirstBucket(since))
+                        || (until != null && bucket > getLastBucket(until))) {
+                    continue;
+                }
+                PagingState pagingState = null;
+                if (resumeState != null) {
+                    if (bucket < resumeBucket) {
+                        continue;
+                    }
+                    pagingState = bucket == resumeBucket ? resumePaging : null;
+                    resumeState = null;
+                }
+                do {
+                    int remaining = limit - page.size();
+                    if (remaining <= 0) {
+                        page.setNextPageToken(toPageToken(state, bucket, pagingState));
+                        return page;
+                    }
+                    BoundStatement bind = getIndexedKeys.bind(state, bucket);
+                    bind.setFetchSize(remaining);
+                    if (pagingState != null) {
+                        bind.setPagingState(pagingState);
+                    }
+                    ResultSet resultSet = executeSession(bind);
+                    // only consume the fetched page, the rest is read by the next iteration or the next page
+                    for (int i = resultSet.getAvailableWithoutFetching(); i > 0; i--) {
+                        Row row = resultSet.one();
+                        long time = row.getLong("time");
+                        if ((since == null || time >= since) && (until == null || time <= until)) {
+                            page.add(state, new TrackingKey(row.getString("tracking_key")));
+                        }
+                    }
+                    pagingState = resultSet.getExecutionInfo().getPagingState();
+                } while (pagingState != null);
+            }
+            resumeState = null;
+        }
+        return page;
+    }
+
+    private static String toPageToken(String state, int bucket, PagingState pagingState) {
+        String token = state + "," + bucket + "," + (pagingState == null ? "" : pagingState.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(UTF_8));
+    }
+
+    /**
+     * Lazily iterate the sealed records, in the order of the sealed key index (seal day, then key hash bucket, then
+     * tracking id). Keys are read page by page and each record is loaded when the iterator reaches it, so only one
+     * record is held at a time.
+     *
+     * @param resumeAfter the last record already read by an interrupted iteration, or null to start from the
+     *        beginning
+     * @throws IllegalArgumentException if resumeAfter is not a sealed record
+     * @throws IllegalStateException if the index is not migrated yet
+     */
+    public Iterator<TrackedContent> iterateSealed(TrackingKey resumeAfter) {
+        requireKeyIndex();
+
+        int firstBucket = Integer.MIN_VALUE;
+        if (resumeAfter != null) {
+            Row marker = executeSession(getSealedMarker.bind(resumeAfter.getId())).one();
+            if (marker == null) {
+                throw new IllegalArgumentException("Tracking record: " + resumeAfter.getId() + " is not sealed");
+            }
+            firstBucket = getBucket(marker.getLong("sealed_time"), resumeAfter.getId());
+        }
+
+        List<Integer> buckets = new ArrayList<>();
+        for (Row row : executeSession(getIndexBuckets.bind(STATE_SEALED))) {
+            if (row.getInt("bucket") >= firstBucket) {
+                buckets.add(row.getInt("bucket"));
+            }
+        }
+
+        int resumeBucket = firstBucket;
+        Iterator<Row> keys = Iterators.concat(Iterators.transform(buckets.iterator(), bucket -> {
+            BoundStatement bind = resumeAfter != null && bucket == resumeBucket
+                    ? getIndexedKeysAfter.bind(STATE_SEALED, bucket, resumeAfter.getId())
+                    : getIndexedKeys.bind(STATE_SEALED, bucket);
+            bind.setFetchSize(config.getFetchSize());
+            return executeSession(bind).iterator();
+        }));
+        return Iterators.filter(
+                Iterators.transform(keys, row -> loadSealed(new TrackingKey(row.getString("tracking_key")))),
+                Objects::nonNull);
+    }
+
+    /**
+     * Load a sealed record without putting it into the cache, so a full iteration does not evict the hot records.
+     */
+    private TrackedContent loadSealed(TrackingKey key) {
+        TrackedContent cached = sealedCache.getRecord(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<DtxTrackingRecord> trackingRecords = getDtxTrackingRecordsFromDb(key);
+        if (trackingRecords == null || trackingRecords.isEmpty()) {
+            return null; // deleted since indexed
+        }
+        return transformDtxTrackingRecordToTrackingContent(key, trackingRecords);
     }
 
     // This may fail given a huge dataset (oom). Only used for test purpose !
@@ -234,7 +994,16 @@ public class CassandraTrackingQuery {
     }
 
     public void addSealedRecord(TrackedContent record) {
-        saveTrackedContentRecords(record);
+        join(addSealedRecordAsync(record));
+    }
+
+    /**
+     * Write the rows of a sealed record, in unlogged batches of its partition, then seal it. Nothing blocks, so the
+     * imports only hold driver requests while they are written.
+     */
+    public CompletionStage<Void> addSealedRecordAsync(TrackedContent record) {
+        return saveInBatchesAsync(toDtxTrackingRecords(record)).thenCompose(v -> markSealedAsync(record.getKey()))
+                .thenRun(() -> sealedCache.invalidateRecord(record.getKey()));
     }
 
     public void start() throws IndyLifecycleException {
@@ -249,26 +1018,268 @@ public class CassandraTrackingQuery {
         return "Folo2Cassandra";
     }
 
-    private TrackedContent transformDtxTrackingRecordToTrackingContent(
-            TrackingKey trackingKey,
-            List<DtxTrackingRecord> trackingRecords) {
+    /**
+     * Write the sealed marker and move the key from the in-progress to the sealed index. A key which already has a
+     * marker keeps its original sealed time.
+     */
+    private void markSealed(TrackingKey trackingKey) {
+        join(markSealedAsync(trackingKey));
+    }
 
-        List<TrackedContentEntry> records = new ArrayList<>();
+    /**
+     * Same as markSealed, chaining the queries instead of blocking on them. The marker is written before the key
+     * buckets are read, see indexInProgress.
+     */
+    private CompletionStage<Void> markSealedAsync(TrackingKey trackingKey) {
+        return executeSessionAsync(getSealedMarker.bind(trackingKey.getId())).thenCompose(marker -> {
+            if (marker.one() != null) {
+                return CompletableFuture.<Void> completedFuture(null);
+            }
+            long sealedTime = System.currentTimeMillis();
+            return executeSessionAsync(insertSealedMarker.bind(trackingKey.getId(), sealedTime))
+                    .thenCompose(v -> indexKeyAsync(STATE_SEALED, trackingKey, sealedTime))
+                    .thenCompose(v -> removeFromInProgressIndexAsync(trackingKey));
+        }).thenRun(() -> sealedCache.setSealed(trackingKey));
+    }
 
-        for (DtxTrackingRecord record : trackingRecords) {
-            records.add(DtxTrackingRecord.toTrackingContentEntry(record));
+    /**
+     * Put the key into the in-progress index, once per key on this instance. A write which passed the sealed check
+     * right before another instance sealed the key can get here after the seal removed the key from the index, so the
+     * sealed marker is read again once the key is indexed and the key is taken out of the index if it got sealed:
+     * either the seal finds the index row and removes it, or this check finds its marker.
+     */
+    CompletionStage<Void> indexInProgress(TrackingKey trackingKey) {
+        if (indexedKeys.as(CaffeineCache.class).getIfPresent(trackingKey) != null) {
+            return CompletableFuture.completedFuture(null);
         }
-        Set<TrackedContentEntry> uploads = records.stream()
-                .filter(record -> record.getEffect().toString().equals(UPLOADS))
-                .collect(Collectors.toSet());
+        long time = System.currentTimeMillis();
+        int bucket = getBucket(time, trackingKey.getId());
+        return CompletableFuture
+                .allOf(
+                        executeSessionAsync(insertIndexedKey.bind(STATE_IN_PROGRESS, bucket, trackingKey.getId(), time))
+                                .toCompletableFuture(),
+                        executeSessionAsync(insertIndexBucket.bind(STATE_IN_PROGRESS, bucket)).toCompletableFuture(),
+                        executeSessionAsync(addKeyBucket.bind(Collections.singleton(bucket), trackingKey.getId()))
+                                .toCompletableFuture())
+                .thenCompose(v -> executeSessionAsync(getSealedMarker.bind(trackingKey.getId())))
+                .thenCompose(marker -> {
+                    if (marker.one() == null) {
+                        indexedKeys.as(CaffeineCache.class)
+                                .put(trackingKey, CompletableFuture.completedFuture(Boolean.TRUE));
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    logger.debug("Tracking record: {} sealed while indexed, removing it from the index", trackingKey);
+                    sealedCache.setSealed(trackingKey);
+                    return CompletableFuture.allOf(
+                            executeSessionAsync(deleteIndexedKey.bind(STATE_IN_PROGRESS, bucket, trackingKey.getId()))
+                                    .toCompletableFuture(),
+                            executeSessionAsync(deleteKeyBuckets.bind(trackingKey.getId())).toCompletableFuture());
+                });
+    }
+
+    private void indexKey(String state, TrackingKey trackingKey, long time) {
+        join(indexKeyAsync(state, trackingKey, time));
+    }
+
+    private CompletionStage<Void> indexKeyAsync(String state, TrackingKey trackingKey, long time) {
+        int bucket = getBucket(time, trackingKey.getId());
+        CompletableFuture<ResultSet> bucketWrite = STATE_IN_PROGRESS.equals(state)
+                ? executeSessionAsync(addKeyBucket.bind(Collections.singleton(bucket), trackingKey.getId()))
+                        .toCompletableFuture()
+                : CompletableFuture.completedFuture(null);
+        return CompletableFuture.allOf(
+                executeSessionAsync(insertIndexedKey.bind(state, bucket, trackingKey.getId(), time))
+                        .toCompletableFuture(),
+                executeSessionAsync(insertIndexBucket.bind(state, bucket)).toCompletableFuture(),
+                bucketWrite);
+    }
+
+    private void removeFromInProgressIndex(TrackingKey trackingKey) {
+        join(removeFromInProgressIndexAsync(trackingKey));
+    }
 
-        // logger.warn("-- Processing {} uploads from tracking key {} " , uploads.size() , trackingKey);
+    private CompletionStage<Void> removeFromInProgressIndexAsync(TrackingKey trackingKey) {
+        return executeSessionAsync(getKeyBuckets.bind(trackingKey.getId())).thenCompose(rs -> {
+            Row row = rs.one();
+            List<CompletableFuture<ResultSet>> deletes = new ArrayList<>();
+            if (row != null) {
+                for (Integer bucket : row.getSet("buckets", Integer.class)) {
+                    deletes.add(
+                            executeSessionAsync(deleteIndexedKey.bind(STATE_IN_PROGRESS, bucket, trackingKey.getId()))
+                                    .toCompletableFuture());
+                }
+            }
+            return CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0]));
+        })
+                .thenCompose(v -> executeSessionAsync(deleteKeyBuckets.bind(trackingKey.getId())))
+                .thenCompose(v -> indexedKeys.invalidate(trackingKey).subscribeAsCompletionStage());
+    }
+
+    private TrackedContent cacheSealedRecord(TrackedContent record) {
+        sealedCache.putRecord(record);
+        return record;
+    }
 
-        Set<TrackedContentEntry> downloads = records.stream()
-                .filter(record -> record.getEffect().toString().equals(DOWNLOADS))
-                .collect(Collectors.toSet());
+    /**
+     * Run the one-time migrations in background, in order, on a thread of their own as they block on their queries.
+     * Each one is recorded in the migrations table once done, and runs under a lease, so only one instance runs it
+     * while the others check every MIGRATION_POLL_SECONDS whether it is done. A failed migration is retried after the
+     * same delay.
+     */
+    private void startMigrations() {
+        if ((sealedMarkersMigrated && keyIndexMigrated && effectsMigrated)
+                || !migrationsStarted.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        migrations = done;
+        migrationExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tracking-migrations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        migrationExecutor.execute(() -> runMigrations(done));
+    }
+
+    private void runMigrations(CompletableFuture<Void> done) {
+        try {
+            boolean applied = migrate(SEALED_MARKERS_MIGRATION, this::migrateSealedMarkers);
+            sealedMarkersMigrated = applied;
+            applied = applied && migrate(KEY_INDEX_MIGRATION, this::migrateKeyIndex);
+            keyIndexMigrated = applied;
+            if (config.isEffectsTableEnabled()) {
+                applied = applied && migrate(EFFECTS_MIGRATION, this::migrateEffects);
+                effectsMigrated = applied;
+            }
+            if (applied) {
+                done.complete(null);
+                migrationExecutor.shutdown();
+                return;
+            }
+        } catch (RuntimeException e) {
+            logger.error("Migrations failed, retrying in {} s", MIGRATION_POLL_SECONDS, e);
+        }
+        migrationExecutor.schedule(() -> runMigrations(done), MIGRATION_POLL_SECONDS, TimeUnit.SECONDS);
+    }
 
-        // logger.warn("-- Processing {} downloads from tracking key {} " , downloads.size() , trackingKey);
+    /**
+     * Wait a while for a running key index migration, for the operations which can only be served from the index.
+     *
+     * @throws IllegalStateException if the index is still not migrated
+     */
+    private void requireKeyIndex() {
+        if (!keyIndexMigrated) {
+            try {
+                migrations.get(KEY_INDEX_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                logger.debug("Key index migration not done: {}", e.toString());
+            }
+        }
+        if (!keyIndexMigrated) {
+            throw new IllegalStateException("Tracking key index is not ready, the migration is still running");
+        }
+    }
+
+    /**
+     * Run a migration unless it is done already, holding its lease.
+     *
+     * @return whether the migration is done, false when another instance holds its lease
+     */
+    private boolean migrate(String name, Runnable migration) {
+        if (executeSession(getMigration.bind(name)).one() != null) {
+            return true;
+        }
+        String lease = name + ".lease";
+        if (!executeSession(acquireMigrationLease.bind(lease, System.currentTimeMillis())).wasApplied()) {
+            logger.info("Migration {} is run by another instance", name);
+            return false;
+        }
+        try {
+            // done by the previous holder of the lease meanwhile
+            if (executeSession(getMigration.bind(name)).one() != null) {
+                return true;
+            }
+            logger.info("Migration {} started", name);
+            migration.run();
+            executeSession(insertMigration.bind(name, System.currentTimeMillis()));
+            logger.info("Migration {} done", name);
+            return true;
+        } finally {
+            executeSession(releaseMigrationLease.bind(lease));
+        }
+    }
+
+    /**
+     * Create the sealed markers for the records which were sealed before the marker table existed.
+     */
+    private void migrateSealedMarkers() {
+        int migrated = 0;
+        for (Row row : executeSession(getSealedStateOfAllRecords.bind())) {
+            if (row.getBool("sealed")) {
+                // writetime is in microseconds
+                long sealedTime = row.getLong(2) / 1000;
+                executeSession(insertSealedMarker.bind(row.getString("tracking_key"), sealedTime));
+                migrated++;
+            }
+        }
+        logger.info("{} sealed markers created", migrated);
+    }
+
+    /**
+     * Index the tracking keys written before the index existed. Sealed keys are bucketed by their sealed time, the
+     * in-progress ones by the last write of their first row.
+     */
+    private void migrateKeyIndex() {
+        int migrated = 0;
+        for (Row row : executeSession(getSealedStateOfAllRecords.bind())) {
+            TrackingKey trackingKey = new TrackingKey(row.getString("tracking_key"));
+            Row marker = executeSession(getSealedMarker.bind(trackingKey.getId())).one();
+            if (marker != null) {
+                indexKey(STATE_SEALED, trackingKey, marker.getLong("sealed_time"));
+            } else {
+                indexKey(STATE_IN_PROGRESS, trackingKey, row.getLong(2) / 1000);
+            }
+            migrated++;
+        }
+        logger.info("{} tracking keys indexed", migrated);
+    }
+
+    /**
+     * Copy the records written before the effect table was enabled into it. The timestamps are appended, so the copy
+     * does not drop the ones written concurrently by the ingest. Only run with cassandra.effectsTable.enabled.
+     */
+    private void migrateEffects() {
+        int migrated = 0;
+        for (Row row : executeSession(getSealedStateOfAllRecords.bind())) {
+            TrackingKey trackingKey = new TrackingKey(row.getString("tracking_key"));
+            List<DtxTrackingRecord> records = getDtxTrackingRecordsFromDb(trackingKey);
+            join(
+                    batchWriter.write(
+                            records,
+                            CassandraTrackingQuery::getEffectPartition,
+                            record -> bindAppend(appendEffectRecord, record),
+                            CassandraTrackingQuery::estimateSize));
+            migrated++;
+        }
+        logger.info("{} tracking records copied to the effect table", migrated);
+    }
+
+    private TrackedContent transformDtxTrackingRecordToTrackingContent(
+            TrackingKey trackingKey,
+            List<DtxTrackingRecord> trackingRecords) {
+
+        Set<TrackedContentEntry> uploads = new HashSet<>();
+        Set<TrackedContentEntry> downloads = new HashSet<>();
+        for (DtxTrackingRecord record : trackingRecords) {
+            TrackedContentEntry entry = DtxTrackingRecord.toTrackingContentEntry(record);
+            if (entry.getEffect() == StoreEffect.UPLOAD) {
+                uploads.add(entry);
+            } else if (entry.getEffect() == StoreEffect.DOWNLOAD) {
+                downloads.add(entry);
+            }
+        }
 
         TrackedContent trackedContent = new TrackedContent(trackingKey, uploads, downloads);
 
@@ -294,40 +1305,282 @@ public class CassandraTrackingQuery {
         List<DtxTrackingRecord> trackingRecords = new ArrayList<>();
         Iterator<Row> iteratorDtxTrackingRecords = rows.iterator();
         while (iteratorDtxTrackingRecords.hasNext()) {
-            Row next = iteratorDtxTrackingRecords.next();
-            DtxTrackingRecord dtxTrackingRecord = new DtxTrackingRecord();
-            dtxTrackingRecord.setTrackingKey(next.getString("tracking_key"));
-            dtxTrackingRecord.setState(next.getBool("sealed"));
-            dtxTrackingRecord.setLocalUrl(next.getString("local_url"));
-            dtxTrackingRecord.setOriginUrl(next.getString("origin_url"));
-            dtxTrackingRecord.setTimestamps(next.getSet("timestamps", Long.class));
-            dtxTrackingRecord.setPath(next.getString("path"));
-            dtxTrackingRecord.setStoreEffect(next.getString("store_effect"));
-            dtxTrackingRecord.setSha256(next.getString("sha256"));
-            dtxTrackingRecord.setSha1(next.getString("sha1"));
-            dtxTrackingRecord.setMd5(next.getString("md5"));
-            dtxTrackingRecord.setSize(next.getLong("size"));
-            dtxTrackingRecord.setStoreKey(next.getString("store_key"));
-            dtxTrackingRecord.setAccessChannel(next.getString("access_channel"));
-            trackingRecords.add(dtxTrackingRecord);
+            trackingRecords.add(toDtxTrackingRecord(iteratorDtxTrackingRecords.next()));
         }
         return trackingRecords;
     }
 
+    private DtxTrackingRecord toDtxTrackingRecord(Row next) {
+        DtxTrackingRecord dtxTrackingRecord = new DtxTrackingRecord();
+        dtxTrackingRecord.setTrackingKey(next.getString("tracking_key"));
+        dtxTrackingRecord.setState(next.getBool("sealed"));
+        dtxTrackingRecord.setLocalUrl(next.getString("local_url"));
+        dtxTrackingRecord.setOriginUrl(next.getString("origin_url"));
+        dtxTrackingRecord.setTimestamps(next.getSet("timestamps", Long.class));
+        dtxTrackingRecord.setPath(next.getString("path"));
+        dtxTrackingRecord.setStoreEffect(next.getString("store_effect"));
+        dtxTrackingRecord.setSha256(next.getString("sha256"));
+        dtxTrackingRecord.setSha1(next.getString("sha1"));
+        dtxTrackingRecord.setMd5(next.getString("md5"));
+        dtxTrackingRecord.setSize(next.getLong("size"));
+        dtxTrackingRecord.setStoreKey(next.getString("store_key"));
+        dtxTrackingRecord.setAccessChannel(next.getString("access_channel"));
+        return dtxTrackingRecord;
+    }
+
+    private CompletionStage<Void> saveInBatchesAsync(Collection<DtxTrackingRecord> records) {
+        return writeInBatchesAsync(records, insertTrackingRecord, insertEffectRecord, this::bindInsert);
+    }
+
+    /**
+     * Same as {@link #saveInBatchesAsync(Collection)} but appends the timestamps to the ones already stored, see
+     * {@link #bindAppend(PreparedStatement, DtxTrackingRecord)}.
+     */
+    private CompletionStage<Void> appendInBatchesAsync(Collection<DtxTrackingRecord> records) {
+        return writeInBatchesAsync(records, appendTrackingRecord, appendEffectRecord, this::bindAppend);
+    }
+
+    /**
+     * Write the rows to the records table, and to the effect table at the same time when it is enabled, with UNLOGGED
+     * batches of one partition each, see {@link PartitionBatchWriter}.
+     */
+    private CompletionStage<Void> writeInBatchesAsync(
+            Collection<DtxTrackingRecord> records,
+            PreparedStatement recordStatement,
+            PreparedStatement effectStatement,
+            BiFunction<PreparedStatement, DtxTrackingRecord, BoundStatement> bind) {
+        CompletionStage<Void> rows = batchWriter.write(
+                records,
+                DtxTrackingRecord::getTrackingKey,
+                record -> bind.apply(recordStatement, record),
+                CassandraTrackingQuery::estimateSize);
+        if (!config.isEffectsTableEnabled()) {
+            return rows;
+        }
+        CompletionStage<Void> effectRows = batchWriter.write(
+                records,
+                CassandraTrackingQuery::getEffectPartition,
+                record -> bind.apply(effectStatement, record),
+                CassandraTrackingQuery::estimateSize);
+        return rows.thenCombine(effectRows, (r, e) -> null);
+    }
+
+    private static String getEffectPartition(DtxTrackingRecord record) {
+        return record.getTrackingKey() + "|" + record.getStoreEffect();
+    }
+
+    /**
+     * Estimate the bytes a row adds to a batch, with the UTF-8 length of its text columns as the server counts them.
+     */
+    static int estimateSize(DtxTrackingRecord record) {
+        int size = ROW_OVERHEAD_BYTES;
+        for (String value : new String[] { record.getTrackingKey(), record.getStoreKey(), record.getAccessChannel(),
+                record.getPath(), record.getOriginUrl(), record.getLocalUrl(), record.getStoreEffect(),
+                record.getMd5(), record.getSha256(), record.getSha1() }) {
+            size += utf8Length(value);
+        }
+        return size + (record.getTimestamps() == null ? 0 : record.getTimestamps().size() * Long.BYTES);
+    }
+
+    /**
+     * Length of the string encoded as UTF-8, without encoding it. A surrogate pair takes 4 bytes, 2 for each of its
+     * chars, a lone surrogate is counted as 2 bytes, more than the replacement it is encoded as.
+     */
+    static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800 || Character.isSurrogate(c)) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private BoundStatement bindInsert(PreparedStatement statement, DtxTrackingRecord record) {
+        return statement.bind(
+                record.getTrackingKey(),
+                record.getState(),
+                record.getStoreKey(),
+                record.getAccessChannel(),
+                record.getPath(),
+                record.getOriginUrl(),
+                record.getLocalUrl(),
+                record.getStoreEffect(),
+                record.getMd5(),
+                record.getSha256(),
+                record.getSha1(),
+                record.getSize(),
+                record.getStarted(),
+                keptTimestamps(record.getTimestamps(), config.getTimestampsMax()));
+    }
+
+    /**
+     * Bind an update which adds the timestamps of the record to the set of the row with a collection append. Unlike
+     * the insert, it neither reads nor overwrites the set, so writing a hot artifact again costs no tombstone and no
+     * copy of the existing timestamps.
+     */
+    private BoundStatement bindAppend(PreparedStatement statement, DtxTrackingRecord record) {
+        return statement.bind(
+                record.getState(),
+                record.getAccessChannel(),
+                record.getOriginUrl(),
+                record.getLocalUrl(),
+                record.getMd5(),
+                record.getSha256(),
+                record.getSha1(),
+                record.getSize(),
+                record.getStarted(),
+                truncateTimestamps(record.getTimestamps(), config.getTimestampsResolutionMillis()),
+                record.getTrackingKey(),
+                record.getStoreKey(),
+                record.getPath(),
+                record.getStoreEffect());
+    }
+
+    /**
+     * Truncate the timestamps to the start of their resolution window, so that all the accesses of one window are
+     * appended as the same set element. A resolution of 0 or less returns the timestamps as they are.
+     */
+    static Set<Long> truncateTimestamps(Set<Long> timestamps, long resolutionMillis) {
+        if (resolutionMillis <= 0 || timestamps == null) {
+            return timestamps;
+        }
+        Set<Long> truncated = new HashSet<>();
+        for (Long timestamp : timestamps) {
+            truncated.add(timestamp - Math.floorMod(timestamp, resolutionMillis));
+        }
+        return truncated;
+    }
+
+    /**
+     * Count the timestamps appended to each row, and trim the rows this instance appended timestamps.max timestamps
+     * to since it last trimmed them. That costs one read of the row per timestamps.max appended timestamps. A failed
+     * trim is only logged, the next one or the seal trims the row.
+     */
+    private CompletionStage<Void> trimAppendedAsync(Collection<DtxTrackingRecord> records) {
+        int max = config.getTimestampsMax();
+        if (max <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> trims = new ArrayList<>();
+        for (DtxTrackingRecord record : records) {
+            int appended = record.getTimestamps() == null ? 0 : record.getTimestamps().size();
+            AtomicInteger count = appendedTimestamps.get(getRowKey(record), k -> new AtomicInteger());
+            if (count.addAndGet(appended) < max) {
+                continue;
+            }
+            count.set(0);
+            BoundStatement read = getRowTimestamps.bind(
+                    record.getTrackingKey(),
+                    record.getStoreKey(),
+                    record.getPath(),
+                    record.getStoreEffect());
+            trims.add(executeSessionAsync(read).thenCompose(rs -> {
+                Row row = rs.one();
+                return row == null ? CompletableFuture.<Void> completedFuture(null)
+                        : removeTimestampsAsync(record, excessTimestamps(row.getSet("timestamps", Long.class), max));
+            }).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(trims.toArray(new CompletableFuture[0])).exceptionally(e -> {
+            logger.warn("Failed to trim the timestamps of {} rows", trims.size(), e);
+            return null;
+        });
+    }
+
+    /**
+     * Trim the rows of a record being sealed, and keep only the trimmed timestamps in the records, so a sealed record
+     * holds at most timestamps.max timestamps per entry whatever the instances appended.
+     */
+    private CompletionStage<Void> trimSealedAsync(List<DtxTrackingRecord> records) {
+        int max = config.getTimestampsMax();
+        List<CompletableFuture<Void>> trims = new ArrayList<>();
+        for (DtxTrackingRecord record : records) {
+            Set<Long> excess = excessTimestamps(record.getTimestamps(), max);
+            if (!excess.isEmpty()) {
+                record.setTimestamps(keptTimestamps(record.getTimestamps(), max));
+                trims.add(removeTimestampsAsync(record, excess).toCompletableFuture());
+            }
+        }
+        return CompletableFuture.allOf(trims.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletionStage<Void> removeTimestampsAsync(DtxTrackingRecord record, Set<Long> excess) {
+        if (excess.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.debug("Trimming {} timestamps of {}", excess.size(), getRowKey(record));
+        CompletableFuture<ResultSet> rows = executeSessionAsync(bindRemove(removeTimestamps, record, excess))
+                .toCompletableFuture();
+        CompletableFuture<ResultSet> effectRows = config.isEffectsTableEnabled()
+                ? executeSessionAsync(bindRemove(removeEffectTimestamps, record, excess)).toCompletableFuture()
+                : CompletableFuture.completedFuture(null);
+        return rows.thenCombine(effectRows, (r, e) -> null);
+    }
+
+    private static BoundStatement bindRemove(PreparedStatement statement, DtxTrackingRecord record, Set<Long> excess) {
+        return statement.bind(
+                excess,
+                record.getTrackingKey(),
+                record.getStoreKey(),
+                record.getPath(),
+                record.getStoreEffect());
+    }
+
+    private static String getRowKey(DtxTrackingRecord record) {
+        return record.getTrackingKey() + "|" + record.getStoreKey() + "|" + record.getPath() + "|"
+                + record.getStoreEffect();
+    }
+
+    /**
+     * The timestamps to drop so that at most max are left: all of them but the first one and the max - 1 latest ones.
+     * A max of 0 or less drops none.
+     */
+    static Set<Long> excessTimestamps(Set<Long> timestamps, int max) {
+        if (max <= 0 || timestamps == null || timestamps.size() <= max) {
+            return Collections.emptySet();
+        }
+        List<Long> sorted = new ArrayList<>(new TreeSet<>(timestamps));
+        return new HashSet<>(sorted.subList(1, sorted.size() - (max - 1)));
+    }
+
+    /**
+     * The timestamps left once the ones of {@link #excessTimestamps(Set, int)} are dropped.
+     */
+    static Set<Long> keptTimestamps(Set<Long> timestamps, int max) {
+        Set<Long> excess = excessTimestamps(timestamps, max);
+        if (excess.isEmpty()) {
+            return timestamps;
+        }
+        Set<Long> kept = new HashSet<>(timestamps);
+        kept.removeAll(excess);
+        return kept;
+    }
+
     private void saveTrackedContentRecords(TrackedContent record) {
+        join(saveInBatchesAsync(toDtxTrackingRecords(record)));
+    }
+
+    private static List<DtxTrackingRecord> toDtxTrackingRecords(TrackedContent record) {
         Set<TrackedContentEntry> downloads = record.getDownloads();
         Set<TrackedContentEntry> uploads = record.getUploads();
-        TrackingKey key = record.getKey();
+        List<DtxTrackingRecord> records = new ArrayList<>();
 
         for (TrackedContentEntry downloadEntry : downloads) {
-            DtxTrackingRecord downloadRecord = DtxTrackingRecord.fromTrackedContentEntry(downloadEntry, true);
-            trackingMapper.save(downloadRecord);
+            records.add(DtxTrackingRecord.fromTrackedContentEntry(downloadEntry, true));
         }
 
         for (TrackedContentEntry uploadEntry : uploads) {
-            DtxTrackingRecord uploadRecord = DtxTrackingRecord.fromTrackedContentEntry(uploadEntry, true);
-            trackingMapper.save(uploadRecord);
+            records.add(DtxTrackingRecord.fromTrackedContentEntry(uploadEntry, true));
         }
+        return records;
     }
 
     public TrackedContent getLegacy(TrackingKey key) {
@@ -343,11 +1596,6 @@ public class CassandraTrackingQuery {
         return getTrackingKeys(statement);
     }
 
-    private Set<TrackingKey> getTrackingKeys() {
-        BoundStatement statement = getTrackingKeys.bind();
-        return getTrackingKeys(statement);
-    }
-
     private Set<TrackingKey> getTrackingKeys(BoundStatement statement) {
         ResultSet resultSet = executeSession(statement);
         List<Row> all = resultSet.all();
@@ -363,31 +1611,115 @@ public class CassandraTrackingQuery {
     }
 
     public void createDtxTrackingRecord(DtxTrackingRecord trackingRecord) {
-        trackingMapper.save(trackingRecord);
+        executeSession(bindInsert(insertTrackingRecord, trackingRecord));
+        if (config.isEffectsTableEnabled()) {
+            executeSession(bindInsert(insertEffectRecord, trackingRecord));
+        }
+        sealedCache.invalidateRecord(new TrackingKey(trackingRecord.getTrackingKey()));
     }
 
-    private ResultSet executeSession(BoundStatement bind) {
-        boolean exception = false;
-        ResultSet trackingRecord = null;
+    private ResultSet executeSession(Statement statement) {
+        for (int attempt = 0;; attempt++) {
+            Session current = session;
+            try {
+                if (recoveryPolicy.isSessionLost(current)) {
+                    reconnect(current);
+                    current = session;
+                }
+                return current.execute(statement);
+            } catch (RuntimeException e) {
+                if (!recoveryPolicy.shouldReconnect(e, attempt)) {
+                    throw e;
+                }
+                logger.error("Cannot connect to host, reconnect once more with new session.", e);
+                reconnect(current);
+            }
+        }
+    }
+
+    private CompletionStage<ResultSet> executeSessionAsync(Statement statement) {
+        return executeSessionAsync(statement, 0);
+    }
+
+    /**
+     * Run a query without blocking. This is also called from the callbacks of other queries, which run on the driver
+     * I/O threads, so reconnecting, which blocks, is always done on the reconnect thread.
+     */
+    private CompletionStage<ResultSet> executeSessionAsync(Statement statement, int attempt) {
+        Session current = session;
+        if (recoveryPolicy.isSessionLost(current)) {
+            return CompletableFuture.runAsync(() -> reconnect(current), reconnectExecutor)
+                    .thenCompose(v -> executeOnSession(session, statement, attempt));
+        }
+        return executeOnSession(current, statement, attempt);
+    }
+
+    private CompletionStage<ResultSet> executeOnSession(Session current, Statement statement, int attempt) {
+        CompletableFuture<ResultSet> result = new CompletableFuture<>();
         try {
-            if (session == null || session.isClosed()) {
-                client.close();
-                client.init();
-                this.init();
+            Futures.addCallback(current.executeAsync(statement), new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet resultSet) {
+                    result.complete(resultSet);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }, MoreExecutors.directExecutor());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result.handle((resultSet, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(resultSet);
             }
-            trackingRecord = session.execute(bind);
-        } catch (NoHostAvailableException e) {
-            exception = true;
-            logger.error("Cannot connect to host, reconnect once more with new session.", e);
-        } finally {
-            if (exception) {
-                client.close();
-                client.init();
-                this.init();
-                trackingRecord = session.execute(bind);
+            if (!recoveryPolicy.shouldReconnect(error, attempt)) {
+                return CompletableFuture.<ResultSet> failedFuture(error);
+            }
+            logger.error("Cannot connect to host, reconnect once more with new session.", error);
+            return CompletableFuture.runAsync(() -> reconnect(current), reconnectExecutor)
+                    .thenCompose(v -> executeSessionAsync(statement, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Re-create the client and the session, unless another thread already replaced the failed session meanwhile.
+     */
+    private synchronized void reconnect(Session failed) {
+        if (session != failed && !recoveryPolicy.isSessionLost(session)) {
+            return;
+        }
+        client.close();
+        client.init();
+        initSession();
+    }
+
+    /**
+     * Wait for a stage, failures are rethrown as they were raised by the blocking calls.
+     */
+    private static <T> T join(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T await(CompletionStage<T> stage) throws ContentException {
+        try {
+            return join(stage);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ContentException) {
+                throw (ContentException) e.getCause();
             }
+            throw e;
         }
-        return trackingRecord;
     }
 
 }
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes rows as UNLOGGED batches holding a single partition each, which Cassandra applies as one mutation. Batches are
+ * capped by statement count and by an estimate of their size, so they stay under the server batch size thresholds, and
+ * at most maxInFlight batches of one write are executed at the same time. A batch is executed with the consistency level
+ * of its statements, or the default one of the writer when they have none.
+ * <p>
+ * Statements per batch, estimated bytes per batch and batch latency (tagged by outcome) are recorded under
+ * tracking.cassandra.batch.*.
+ */
+class PartitionBatchWriter {
+    private final Function<Statement, CompletionStage<ResultSet>> executor;
+
+    private final ConsistencyLevel consistencyLevel;
+
+    private final int maxStatements;
+
+    private final int maxBytes;
+
+    private final int maxInFlight;
+
+    private final DistributionSummary statements;
+
+    private final DistributionSummary bytes;
+
+    private final Timer succeeded;
+
+    private final Timer failed;
+
+    PartitionBatchWriter(
+            Function<Statement, CompletionStage<ResultSet>> executor,
+            ConsistencyLevel consistencyLevel,
+            CassandraConfiguration config,
+            MeterRegistry registry) {
+        this.executor = executor;
+        this.consistencyLevel = consistencyLevel;
+        this.maxStatements = Math.max(1, config.getBatchMaxStatements());
+        this.maxBytes = Math.max(1, config.getBatchMaxBytes());
+        this.maxInFlight = Math.max(1, config.getBatchMaxInFlight());
+        this.statements = DistributionSummary.builder("tracking.cassandra.batch.statements")
+                .description("Statements per unlogged partition batch")
+                .register(registry);
+        this.bytes = DistributionSummary.builder("tracking.cassandra.batch.bytes")
+                .description("Estimated size of unlogged partition batches")
+                .baseUnit("bytes")
+                .register(registry);
+        this.succeeded = Timer.builder("tracking.cassandra.batch.latency")
+                .description("Execution time of unlogged partition batches")
+                .tag("outcome", "success")
+                .register(registry);
+        this.failed = Timer.builder("tracking.cassandra.batch.latency")
+                .description("Execution time of unlogged partition batches")
+                .tag("outcome", "failure")
+                .register(registry);
+    }
+
+    /**
+     * Group the rows per partition, split the groups into capped batches and execute them.
+     *
+     * @param partition the partition key of a row
+     * @param bind the insert statement of a row
+     * @param size an estimate of the bytes of a row
+     * @return completed when all batches are applied, or exceptionally with the first failure, in which case the
+     *         batches not started yet are skipped
+     */
+    <T> CompletionStage<Void> write(
+            Collection<T> rows,
+            Function<T, Object> partition,
+            Function<T, Statement> bind,
+            ToIntFunction<T> size) {
+        Map<Object, List<T>> partitions = new LinkedHashMap<>();
+        for (T row : rows) {
+            partitions.computeIfAbsent(partition.apply(row), k -> new ArrayList<>()).add(row);
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        for (List<T> partitionRows : partitions.values()) {
+            Batch batch = new Batch();
+            for (T row : partitionRows) {
+                int rowSize = size.applyAsInt(row);
+                if (batch.statement.size() > 0
+                        && (batch.statement.size() >= maxStatements || batch.bytes + rowSize > maxBytes)) {
+                    batches.add(batch);
+                    batch = new Batch();
+                }
+                Statement statement = bind.apply(row);
+                if (statement.getConsistencyLevel() != null) {
+                    batch.statement.setConsistencyLevel(statement.getConsistencyLevel());
+                }
+                batch.statement.add(statement);
+                batch.bytes += rowSize;
+            }
+            if (batch.statement.size() > 0) {
+                batches.add(batch);
+            }
+        }
+        return execute(batches);
+    }
+
+    private CompletionStage<Void> execute(List<Batch> batches) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (batches.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+        Iterator<Batch> pending = batches.iterator();
+        AtomicInteger remaining = new AtomicInteger(batches.size());
+        for (int i = 0; i < Math.min(maxInFlight, batches.size()); i++) {
+            executeNext(pending, remaining, done);
+        }
+        return done;
+    }
+
+    private void executeNext(Iterator<Batch> pending, AtomicInteger remaining, CompletableFuture<Void> done) {
+        Batch batch;
+        synchronized (pending) {
+            if (done.isDone() || !pending.hasNext()) {
+                return;
+            }
+            batch = pending.next();
+        }
+        statements.record(batch.statement.size());
+        bytes.record(batch.bytes);
+        long start = System.nanoTime();
+        executor.apply(batch.statement).whenComplete((result, error) -> {
+            long elapsed = System.nanoTime() - start;
+            if (error != null) {
+                failed.record(elapsed, TimeUnit.NANOSECONDS);
+                done.completeExceptionally(error);
+                return;
+            }
+            succeeded.record(elapsed, TimeUnit.NANOSECONDS);
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            } else {
+                executeNext(pending, remaining, done);
+            }
+        });
+    }
+
+    private final class Batch {
+        private final BatchStatement statement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+
+        private int bytes;
+
+        private Batch() {
+            statement.setConsistencyLevel(consistencyLevel);
+        }
+    }
+}
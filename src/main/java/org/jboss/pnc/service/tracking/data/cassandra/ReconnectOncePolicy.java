@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+
+/**
+ * Re-create the session once when no host is available, e.g. after the Cassandra cluster was restarted.
+ */
+public class ReconnectOncePolicy implements SessionRecoveryPolicy {
+
+    @Override
+    public boolean shouldReconnect(Throwable error, int attempt) {
+        return attempt == 0 && error instanceof NoHostAvailableException;
+    }
+}
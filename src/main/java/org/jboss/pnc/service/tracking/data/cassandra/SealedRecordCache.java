@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
+import org.jboss.pnc.service.tracking.model.TrackedContent;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process cache of the sealed tracking keys and of the content of sealed records. A sealed record never goes back
+ * to in-progress, so the entries only have to be dropped when a record is deleted or rewritten by admin operations.
+ * Those only drop them on the instance which ran them, the others keep serving the record, and rejecting the writes
+ * of a deleted key as sealed, until the entries expire. Both caches expire after a minute to bound that window.
+ * <p>
+ * The keys caches are configured under quarkus.cache.caffeine. Keys found not sealed by the ingest are cached for a
+ * short time only, as during that time the writes of a key sealed by another instance are still accepted. The records cache is weighed by the number of tracked
+ * entries of each record, as their size goes from a few entries to millions, and is bounded by
+ * tracking.sealed-cache.max-entries and tracking.sealed-cache.expire-after-write. Its hit/miss/eviction metrics are
+ * published under the sealed-tracking-records cache name.
+ */
+@ApplicationScoped
+public class SealedRecordCache {
+    public static final String SEALED_KEYS = "sealed-tracking-keys";
+
+    public static final String SEALED_RECORDS = "sealed-tracking-records";
+
+    public static final String UNSEALED_KEYS = "unsealed-tracking-keys";
+
+    @Inject
+    @CacheName(SEALED_KEYS)
+    Cache sealedKeys;
+
+    @Inject
+    @CacheName(UNSEALED_KEYS)
+    Cache unsealedKeys;
+
+    @Inject
+    IndyTrackingConfiguration trackingConfig;
+
+    @Inject
+    MeterRegistry registry;
+
+    private com.github.benmanes.caffeine.cache.Cache<TrackingKey, TrackedContent> sealedRecords;
+
+    @PostConstruct
+    void init() {
+        sealedRecords = Caffeine.newBuilder()
+                .maximumWeight(trackingConfig.sealedCacheMaxEntries())
+                .weigher((TrackingKey key, TrackedContent record) -> weigh(record))
+                .expireAfterWrite(Duration.ofMillis(trackingConfig.sealedCacheExpireAfterWrite()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics
+                .monitor(registry == null ? Metrics.globalRegistry : registry, sealedRecords, SEALED_RECORDS);
+    }
+
+    static int weigh(TrackedContent record) {
+        return 1 + size(record.getUploads()) + size(record.getDownloads());
+    }
+
+    private static int size(Set<?> entries) {
+        return entries == null ? 0 : entries.size();
+    }
+
+    public boolean isSealed(TrackingKey key) {
+        return sealedKeys.as(CaffeineCache.class).getIfPresent(key) != null;
+    }
+
+    public void setSealed(TrackingKey key) {
+        unsealedKeys.invalidate(key).await().indefinitely();
+        sealedKeys.as(CaffeineCache.class).put(key, CompletableFuture.completedFuture(Boolean.TRUE));
+    }
+
+    /**
+     * Whether the key was found not sealed a moment ago, which spares the ingest writes of a key the sealed check of
+     * each event. A seal on another instance is only seen once the entry expired.
+     */
+    public boolean isUnsealed(TrackingKey key) {
+        return unsealedKeys.as(CaffeineCache.class).getIfPresent(key) != null;
+    }
+
+    public void setUnsealed(TrackingKey key) {
+        unsealedKeys.as(CaffeineCache.class).put(key, CompletableFuture.completedFuture(Boolean.TRUE));
+    }
+
+    /**
+     * The cached record, shared by all the callers: its sets can not be changed, nor should its entries be.
+     */
+    public TrackedContent getRecord(TrackingKey key) {
+        return sealedRecords.getIfPresent(key);
+    }
+
+    /**
+     * Cache a read-only copy of the record, so the caller which loaded it can still change its own instance.
+     */
+    public void putRecord(TrackedContent record) {
+        setSealed(record.getKey());
+        sealedRecords.put(
+                record.getKey(),
+                new TrackedContent(record.getKey(), readOnly(record.getUploads()), readOnly(record.getDownloads())));
+    }
+
+    private static Set<TrackedContentEntry> readOnly(Set<TrackedContentEntry> entries) {
+        return entries == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(entries));
+    }
+
+    public void invalidateRecord(TrackingKey key) {
+        sealedRecords.invalidate(key);
+    }
+
+    public void invalidate(TrackingKey key) {
+        sealedKeys.invalidate(key).await().indefinitely();
+        invalidateRecord(key);
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.datastax.driver.core.Session;
+
+/**
+ * Decides when the Cassandra session is re-created and the statement executed once more. It is consulted by both the
+ * blocking and the asynchronous execution paths of {@link CassandraTrackingQuery}, as opposed to the driver
+ * {@link com.datastax.driver.core.policies.RetryPolicy} which only retries within a working session.
+ */
+public interface SessionRecoveryPolicy {
+
+    /**
+     * Whether the session must be re-created before executing a statement.
+     */
+    default boolean isSessionLost(Session session) {
+        return session == null || session.isClosed();
+    }
+
+    /**
+     * Whether to re-create the session and execute the statement again after it failed.
+     *
+     * @param error the failure of the execution
+     * @param attempt the number of recoveries already performed for this statement
+     */
+    boolean shouldReconnect(Throwable error, int attempt);
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of the tracking key index, the keys grouped by state plus the token of the next page, which is null when
+ * the index is exhausted.
+ */
+public class TrackingKeyPage {
+    private final Map<String, List<TrackingKey>> keys = new LinkedHashMap<>();
+
+    private int size;
+
+    private String nextPageToken;
+
+    void add(String state, TrackingKey key) {
+        keys.computeIfAbsent(state, k -> new ArrayList<>()).add(key);
+        size++;
+    }
+
+    public List<TrackingKey> getKeys(String state) {
+        return keys.get(state);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
+import org.jboss.pnc.service.tracking.exception.ContentException;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.util.AsyncRetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind buffer of the tracked entries. Entries of the same (tracking key, store key, path, effect) are
+ * merged while buffered, so an artifact downloaded many times during a flush interval is written once. The buffer is
+ * flushed every flush-interval, when it holds max-entries entries, and for a single key before it is sealed.
+ * <p>
+ * Nothing is persisted until the flush: callers must only acknowledge their input, e.g. the Kafka offsets, once the
+ * returned stage completes, which happens after the flush of the entries succeeded. They must not wait for it before
+ * adding their next entries though, or the buffer only ever merges the entries of one call. A failed flush is retried like the
+ * unbuffered writes, up to tracking.kafka.write-retries times, before the stages of its entries fail. The entries are
+ * then dropped from the buffer, the callers nack their input instead.
+ */
+@ApplicationScoped
+public class TrackingWriteBuffer {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Inject
+    IndyTrackingConfiguration config;
+
+    @Inject
+    CassandraTrackingQuery recordManager;
+
+    private final Map<TrackingKey, Pending> pending = new HashMap<>();
+
+    private final Map<TrackingKey, CompletableFuture<Void>> flushing = new ConcurrentHashMap<>();
+
+    private int size;
+
+    private ScheduledExecutorService scheduler;
+
+    public TrackingWriteBuffer() {
+    }
+
+    public TrackingWriteBuffer(IndyTrackingConfiguration config, CassandraTrackingQuery recordManager) {
+        this.config = config;
+        this.recordManager = recordManager;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        long interval = config.writeBufferFlushInterval();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tracking-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info(
+                "Tracking write buffer enabled, flush interval: {} ms, max entries: {}",
+                interval,
+                config.writeBufferMaxEntries());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        flushAll().toCompletableFuture().join();
+    }
+
+    public boolean isEnabled() {
+        return config.writeBufferEnabled();
+    }
+
+    /**
+     * Buffer the entries of a tracking key.
+     *
+     * @return completed when the entries are written, or exceptionally as the write of
+     *         {@link CassandraTrackingQuery#recordArtifactsAsync} would
+     */
+    public CompletionStage<Void> add(TrackingKey key, Iterable<TrackedContentEntry> entries) {
+        CompletableFuture<Void> written;
+        boolean full;
+        synchronized (this) {
+            Pending keyPending = pending.computeIfAbsent(key, k -> new Pending());
+            for (TrackedContentEntry entry : entries) {
+                String mergeKey = entry.getStoreKey() + "|" + entry.getPath() + "|" + entry.getEffect();
+                TrackedContentEntry buffered = keyPending.entries.get(mergeKey);
+                if (buffered == null) {
+                    keyPending.entries.put(mergeKey, entry);
+                    size++;
+                } else {
+                    buffered.merge(entry);
+                }
+            }
+            written = keyPending.written;
+            full = size >= config.writeBufferMaxEntries();
+        }
+        if (full) {
+            flushAll();
+        }
+        return written;
+    }
+
+    /**
+     * Write the buffered entries of a key, waiting as well for a flush of the key already running. The stage fails if
+     * any of these writes failed.
+     */
+    public CompletionStage<Void> flush(TrackingKey key) {
+        Pending keyPending;
+        synchronized (this) {
+            keyPending = pending.remove(key);
+            if (keyPending != null) {
+                size -= keyPending.entries.size();
+            }
+        }
+        CompletableFuture<Void> running = flushing.get(key);
+        CompletableFuture<Void> write = keyPending == null ? CompletableFuture.completedFuture(null)
+                : write(key, keyPending);
+        return running == null ? write : CompletableFuture.allOf(running, write);
+    }
+
+    /**
+     * Write all the buffered entries. Failures are only reported to the stages returned by {@link #add}.
+     */
+    public CompletionStage<Void> flushAll() {
+        Map<TrackingKey, Pending> toWrite;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            toWrite = new LinkedHashMap<>(pending);
+            pending.clear();
+            size = 0;
+        }
+        logger.debug("Flushing the buffered entries of {} tracking keys", toWrite.size());
+        return CompletableFuture.allOf(
+                toWrite.entrySet()
+                        .stream()
+                        .map(e -> write(e.getKey(), e.getValue()).exceptionally(error -> null))
+                        .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Write the entries of a key once the flush of the key already running is done, so the writes of a key keep the
+     * order the entries were added in.
+     */
+    private CompletableFuture<Void> write(TrackingKey key, Pending keyPending) {
+        List<TrackedContentEntry> entries = new ArrayList<>(keyPending.entries.values());
+        CompletableFuture<Void> tracked = flushing.compute(
+                key,
+                (k, running) -> (running == null ? CompletableFuture.<Void> completedFuture(null)
+                        : running.exceptionally(e -> null))
+                        .thenCompose(
+                                v -> AsyncRetry.retry(
+                                        "flush " + entries.size() + " buffered entries for " + key,
+                                        config.kafkaWriteRetries(),
+                                        config.kafkaWriteRetryDelay(),
+                                        e -> !(e instanceof ContentException),
+                                        () -> recordManager.recordArtifactsAsync(key, entries))));
+        tracked.whenComplete((r, e) -> {
+            flushing.remove(key, tracked);
+            if (e != null) {
+                keyPending.written.completeExceptionally(e);
+            } else {
+                keyPending.written.complete(null);
+            }
+        });
+        return tracked;
+    }
+
+    private static final class Pending {
+        private final Map<String, TrackedContentEntry> entries = new LinkedHashMap<>();
+
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+    }
+}
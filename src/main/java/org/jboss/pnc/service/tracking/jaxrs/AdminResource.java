@@ -38,8 +38,12 @@ import org.jboss.pnc.service.tracking.model.StoreType;
 import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
 import org.jboss.pnc.service.tracking.model.TrackingKey;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentStreamDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+import org.jboss.pnc.service.tracking.model.dto.ImportResultDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackingIdsDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackingIdsPageDTO;
+import org.jboss.pnc.service.tracking.util.jackson.EntryFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +52,9 @@ import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HEAD;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
@@ -56,6 +62,8 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriInfo;
 import java.io.File;
@@ -64,6 +72,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 
 import static java.util.Collections.emptySet;
@@ -81,6 +90,22 @@ import static org.jboss.pnc.service.tracking.Constants.TRACKING_TYPE.SEALED;
 public class AdminResource {
     public static final String MEDIATYPE_APPLICATION_ZIP = "application/zip";
 
+    /**
+     * Binary json of the reports for machine consumers, see DTOResponseFilter.
+     */
+    public static final String MEDIATYPE_APPLICATION_SMILE = "application/x-jackson-smile";
+
+    /**
+     * One entry of the record per line, written while it is read from the storage.
+     */
+    public static final String MEDIATYPE_APPLICATION_NDJSON = "application/x-ndjson";
+
+    static final MediaType NDJSON_TYPE = MediaType.valueOf(MEDIATYPE_APPLICATION_NDJSON);
+
+    static final int DEFAULT_IDS_PAGE_LIMIT = 1000;
+
+    static final int MAX_IDS_PAGE_LIMIT = 10000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Inject
@@ -158,13 +183,21 @@ public class AdminResource {
     @APIResponse(responseCode = "404", description = "No such tracking record")
     @Path("/{id}/report")
     @GET
+    @Produces({ APPLICATION_JSON, MEDIATYPE_APPLICATION_SMILE, MEDIATYPE_APPLICATION_NDJSON })
     public Response getReport(
             @Parameter(
                     description = "User-assigned tracking session key",
                     in = PATH,
                     required = true) @PathParam("id") final String id,
-            @Context final UriInfo uriInfo) {
-        return getRecord(id, uriInfo);
+            @Parameter(
+                    description = "Comma-separated entry fields to return, all of them by default",
+                    in = QUERY) @QueryParam("fields") final String fields,
+            @Parameter(
+                    description = "Build the localUrl of the entries, true by default",
+                    in = QUERY) @QueryParam("includeLocalUrl") @DefaultValue("true") final boolean includeLocalUrl,
+            @Context final UriInfo uriInfo,
+            @Context final HttpHeaders headers) {
+        return getRecord(id, fields, includeLocalUrl, uriInfo, headers);
     }
 
     @Operation(
@@ -201,7 +234,7 @@ public class AdminResource {
     @APIResponse(responseCode = "404", description = "No such tracking record")
     @Path("/{id}/artifactRecord/{path: (.*)}")
     @GET
-    public Response recordArtifact(
+    public CompletionStage<Response> recordArtifact(
             @Parameter(in = PATH, required = true) @PathParam("id") final String id,
             @Parameter(in = PATH, required = true) @PathParam("path") String path,
             @Parameter(in = QUERY, required = true) @QueryParam("packageType") String packageType,
@@ -221,7 +254,7 @@ public class AdminResource {
                     type,
                     path,
                     id);
-            return Response.status(Response.Status.NOT_FOUND).build();
+            return CompletableFuture.completedFuture(Response.status(Response.Status.NOT_FOUND).build());
         }
         TrackedContentEntry contentEntry = new TrackedContentEntry(
                 new TrackingKey(id),
@@ -234,12 +267,13 @@ public class AdminResource {
                 md5,
                 sha1,
                 sha256);
-        Boolean result = controller.recordArtifact(contentEntry);
-        if (result) {
-            logger.info("Entry record done, path: {}, id: {}.", path, id);
-            return Response.ok().build();
-        }
-        return Response.status(Response.Status.NOT_FOUND).build();
+        return controller.recordArtifact(contentEntry).thenApply(result -> {
+            if (result) {
+                logger.info("Entry record done, path: {}, id: {}.", path, id);
+                return Response.ok().build();
+            }
+            return Response.status(Response.Status.NOT_FOUND).build();
+        });
     }
 
     @Operation(description = "Seal the tracking record for the specified key, to prevent further content logging")
@@ -262,20 +296,48 @@ public class AdminResource {
         }
     }
 
-    @Operation(description = "Alias of /{id}/record, returns the tracking record for the specified key")
+    @Operation(
+            description = "Alias of /{id}/record, returns the tracking record for the specified key. With Accept: "
+                    + MEDIATYPE_APPLICATION_NDJSON + " the uploads then the downloads are written one per line, "
+                    + "with their effect, while they are read")
     @APIResponse(responseCode = "200", description = "Tracking record")
     @APIResponse(responseCode = "404", description = "No such tracking record")
     @Path("/{id}/record")
     @GET
+    @Produces({ APPLICATION_JSON, MEDIATYPE_APPLICATION_SMILE, MEDIATYPE_APPLICATION_NDJSON })
     public Response getRecord(
             @Parameter(
                     description = "User-assigned tracking session key",
                     in = PATH,
                     required = true) @PathParam("id") final String id,
-            @Context final UriInfo uriInfo) {
+            @Parameter(
+                    description = "Comma-separated entry fields to return, all of them by default",
+                    in = QUERY) @QueryParam("fields") final String fields,
+            @Parameter(
+                    description = "Build the localUrl of the entries, true by default",
+                    in = QUERY) @QueryParam("includeLocalUrl") @DefaultValue("true") final boolean includeLocalUrl,
+            @Context final UriInfo uriInfo,
+            @Context final HttpHeaders headers) {
+        final Set<String> entryFields;
+        try {
+            entryFields = EntryFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        final String baseUrl = getLocalUrlBase(entryFields, includeLocalUrl);
+
+        if (DTOResponseFilter.isPreferredOverJson(headers.getAcceptableMediaTypes(), NDJSON_TYPE)) {
+            return responseHelper.formatOkResponseWithJsonLines(controller.getRecordLines(id, baseUrl), entryFields);
+        }
+
         Response response;
         try {
-            final String baseUrl = config.contentServiceURL();
+            if (config.recordStreaming()) {
+                TrackedContentStreamDTO stream = controller.getRecordStream(id, baseUrl);
+                if (stream != null) {
+                    return responseHelper.formatOkResponseWithJsonFields(stream, entryFields);
+                }
+            }
             TrackedContentDTO record = controller.getRecord(id, baseUrl);
             if (record == null) {
                 record = controller.getLegacyRecord(id, baseUrl); // Try legacy record
@@ -284,7 +346,7 @@ public class AdminResource {
                 // if not found, return an empty report
                 record = new TrackedContentDTO(new TrackingKey(id), emptySet(), emptySet());
             }
-            response = responseHelper.formatOkResponseWithJsonEntity(record);
+            response = responseHelper.formatOkResponseWithJsonFields(record, entryFields);
         } catch (final IndyWorkflowException e) {
             logger.error(
                     String.format("Failed to retrieve tracking report for: %s. Reason: %s", id, e.getMessage()),
@@ -296,6 +358,78 @@ public class AdminResource {
         return response;
     }
 
+    @Operation(
+            description = "Returns the uploads of the tracking record for the specified key, without reading its "
+                    + "downloads")
+    @APIResponse(responseCode = "200", description = "Uploaded entries")
+    @Path("/{id}/record/uploads")
+    @GET
+    public Response getRecordUploads(
+            @Parameter(
+                    description = "User-assigned tracking session key",
+                    in = PATH,
+                    required = true) @PathParam("id") final String id,
+            @Parameter(
+                    description = "Comma-separated entry fields to return, all of them by default",
+                    in = QUERY) @QueryParam("fields") final String fields,
+            @Parameter(
+                    description = "Build the localUrl of the entries, true by default",
+                    in = QUERY) @QueryParam("includeLocalUrl") @DefaultValue("true") final boolean includeLocalUrl) {
+        final Set<String> entryFields;
+        try {
+            entryFields = EntryFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        return responseHelper.formatOkResponseWithJsonFields(
+                controller.getRecordEntries(id, StoreEffect.UPLOAD, getLocalUrlBase(entryFields, includeLocalUrl)),
+                entryFields);
+    }
+
+    @Operation(
+            description = "Returns the downloads of the tracking record for the specified key, without reading its "
+                    + "uploads")
+    @APIResponse(responseCode = "200", description = "Downloaded entries")
+    @Path("/{id}/record/downloads")
+    @GET
+    public Response getRecordDownloads(
+            @Parameter(
+                    description = "User-assigned tracking session key",
+                    in = PATH,
+                    required = true) @PathParam("id") final String id,
+            @Parameter(
+                    description = "Comma-separated entry fields to return, all of them by default",
+                    in = QUERY) @QueryParam("fields") final String fields,
+            @Parameter(
+                    description = "Build the localUrl of the entries, true by default",
+                    in = QUERY) @QueryParam("includeLocalUrl") @DefaultValue("true") final boolean includeLocalUrl) {
+        final Set<String> entryFields;
+        try {
+            entryFields = EntryFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        return responseHelper.formatOkResponseWithJsonFields(
+                controller.getRecordEntries(id, StoreEffect.DOWNLOAD, getLocalUrlBase(entryFields, includeLocalUrl)),
+                entryFields);
+    }
+
+    @Operation(description = "Check whether a tracking record exists for the specified key, without reading it")
+    @APIResponse(responseCode = "200", description = "Tracking record exists")
+    @APIResponse(responseCode = "404", description = "No such tracking record")
+    @Path("/{id}/record")
+    @HEAD
+    public Response hasRecord(
+            @Parameter(
+                    description = "User-assigned tracking session key",
+                    in = PATH,
+                    required = true) @PathParam("id") final String id) {
+        if (controller.hasRecord(id)) {
+            return Response.ok().build();
+        }
+        return Response.status(Response.Status.NOT_FOUND).build();
+    }
+
     @Operation(description = "Delete the tracking record for the specified key")
     @Path("/{id}/record")
     @DELETE
@@ -315,11 +449,14 @@ public class AdminResource {
         return response;
     }
 
-    @Operation(description = "Retrieve tracking ids for records of given type.")
+    @Operation(
+            description = "Retrieve tracking ids for records of given type. Passing any of pageToken, limit, since or "
+                    + "until returns one page of ids with the token of the next page.")
     @APIResponse(
             responseCode = "200",
             content = @Content(schema = @Schema(implementation = List.class)),
             description = "tracking ids with sealed or in_progress")
+    @APIResponse(responseCode = "400", description = "Invalid paging parameters")
     @APIResponse(responseCode = "404", description = "No ids found for type")
     @Path("/report/ids/{type}")
     @GET
@@ -327,7 +464,26 @@ public class AdminResource {
             @Parameter(
                     description = "Report type, should be in_progress|sealed|all|legacy",
                     in = PATH,
-                    required = true) @PathParam("type") final String type) {
+                    required = true) @PathParam("type") final String type,
+            @Parameter(
+                    description = "Token of the page to get, as returned in nextPageToken of the previous page",
+                    in = QUERY) @QueryParam("pageToken") final String pageToken,
+            @Parameter(
+                    description = "Max number of ids in the page, default " + DEFAULT_IDS_PAGE_LIMIT + ", at most "
+                            + MAX_IDS_PAGE_LIMIT,
+                    in = QUERY) @QueryParam("limit") final Integer limit,
+            @Parameter(
+                    description = "Only ids sealed (or first recorded, when in progress) at or after this time, in "
+                            + "epoch millis",
+                    in = QUERY) @QueryParam("since") final Long since,
+            @Parameter(
+                    description = "Only ids sealed (or first recorded, when in progress) at or before this time, in "
+                            + "epoch millis",
+                    in = QUERY) @QueryParam("until") final Long until) {
+        if (pageToken != null || limit != null || since != null || until != null) {
+            return getRecordIdsPage(type, pageToken, limit, since, until);
+        }
+
         Response response;
         TrackingIdsDTO ids;
         if (LEGACY.equals(type)) {
@@ -345,6 +501,39 @@ public class AdminResource {
         return response;
     }
 
+    // base url of the local urls of the entries, null to skip building them when they are not returned
+    private String getLocalUrlBase(final Set<String> entryFields, final boolean includeLocalUrl) {
+        return includeLocalUrl && EntryFields.includesLocalUrl(entryFields) ? config.contentServiceURL() : null;
+    }
+
+    private Response getRecordIdsPage(String type, String pageToken, Integer limit, Long since, Long until) {
+        if (LEGACY.equals(type)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Paging is not supported for legacy ids").build();
+        }
+        if (limit != null && (limit < 1 || limit > MAX_IDS_PAGE_LIMIT)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("limit should be between 1 and " + MAX_IDS_PAGE_LIMIT)
+                    .build();
+        }
+        if (since != null && until != null && since > until) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("since should not be after until").build();
+        }
+
+        Response response = null;
+        try {
+            TrackingIdsPageDTO page = controller.getTrackingIdsPage(
+                    getRequiredTypes(type),
+                    pageToken,
+                    limit == null ? DEFAULT_IDS_PAGE_LIMIT : limit,
+                    since,
+                    until);
+            response = responseHelper.formatOkResponseWithJsonEntity(page);
+        } catch (IndyWorkflowException e) {
+            responseHelper.throwError(e);
+        }
+        return response;
+    }
+
     private Set<Constants.TRACKING_TYPE> getRequiredTypes(String type) {
         Set<Constants.TRACKING_TYPE> types = new HashSet<>();
 
@@ -357,35 +546,65 @@ public class AdminResource {
         return types;
     }
 
-    @Operation(description = "Export the records as a ZIP file.")
+    @Operation(description = "Export the sealed records as a ZIP file, streamed while the records are read.")
     @APIResponse(responseCode = "200", description = "ZIP content")
+    @APIResponse(responseCode = "400", description = "Unknown format or the record to resume after is not sealed")
     @Path("/report/export")
     @GET
     @Produces(MEDIATYPE_APPLICATION_ZIP)
-    public File exportReport() {
+    public Response exportReport(
+            @Parameter(
+                    description = "Id of the last complete entry of an interrupted export, to continue from there",
+                    in = QUERY) @QueryParam("resumeAfter") final String resumeAfter,
+            @Parameter(
+                    description = "Format of the records, java or binary, the configured one by default",
+                    in = QUERY) @QueryParam("format") final String format) {
+        Response response = null;
         try {
-            return controller.renderReportZip();
+            response = Response.ok(controller.renderReportZip(resumeAfter, format)).build();
         } catch (IndyWorkflowException e) {
             responseHelper.throwError(e);
         }
 
-        return null;
+        return response;
     }
 
     @Operation(description = "Import records from a ZIP file.")
-    @APIResponse(responseCode = "201", description = "Import ZIP content")
+    @APIResponse(
+            responseCode = "201",
+            content = @Content(schema = @Schema(implementation = ImportResultDTO.class)),
+            description = "Import ZIP content, with the records which failed to import")
     @Path("/report/import")
     @PUT
+    @Produces(APPLICATION_JSON)
     public Response importReport(final @Context UriInfo uriInfo, final @Context HttpServletRequest request) {
+        ImportResultDTO result = null;
         try {
-            controller.importRecordZip(request.getInputStream());
+            result = controller.importRecordZip(request.getInputStream());
         } catch (IndyWorkflowException e) {
             responseHelper.throwError(e);
         } catch (IOException e) {
             responseHelper.throwError(new IndyWorkflowException("IO error", e));
         }
 
-        return Response.created(uriInfo.getRequestUri()).build();
+        return Response.created(uriInfo.getRequestUri()).entity(result).build();
+    }
+
+    @Operation(description = "Get the progress of the running import, or the result of the last one.")
+    @APIResponse(
+            responseCode = "200",
+            content = @Content(schema = @Schema(implementation = ImportResultDTO.class)),
+            description = "Import progress")
+    @APIResponse(responseCode = "404", description = "No import ran since the service started")
+    @Path("/report/import/progress")
+    @GET
+    @Produces(APPLICATION_JSON)
+    public Response getImportProgress() {
+        ImportResultDTO progress = controller.getImportProgress();
+        if (progress == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(progress).build();
     }
 
     @Operation(description = "Batch delete files uploaded through FOLO trackingID under the given storeKey.")
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.jaxrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import static jakarta.ws.rs.core.HttpHeaders.ACCEPT;
+import static jakarta.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static jakarta.ws.rs.core.HttpHeaders.VARY;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.jboss.pnc.service.tracking.jaxrs.AdminResource.MEDIATYPE_APPLICATION_SMILE;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOStreamingOutput.BROTLI;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOStreamingOutput.GZIP;
+
+/**
+ * Picks the format of the json responses written by {@link DTOStreamingOutput}. Pretty-printing is turned off with
+ * ?pretty=false or an Accept parameter like application/json;pretty=false, else tracking.json.pretty applies. The
+ * content-encoding is br (when brotli4j is available) or gzip as accepted by the client, preferring br. Resources
+ * which list {@link AdminResource#MEDIATYPE_APPLICATION_SMILE} in their @Produces are written as smile when the client
+ * prefers it over json, with the same serializers as the json mapper.
+ */
+@Provider
+public class DTOResponseFilter implements ContainerResponseFilter {
+    static final String PRETTY = "pretty";
+
+    static final MediaType SMILE_TYPE = MediaType.valueOf(MEDIATYPE_APPLICATION_SMILE);
+
+    @Inject
+    IndyTrackingConfiguration config;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    private ObjectMapper smileMapper;
+
+    @PostConstruct
+    void init() {
+        smileMapper = smileMapper(mapper);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        if (!(response.getEntity() instanceof DTOStreamingOutput)) {
+            return;
+        }
+
+        boolean pretty = isPretty(
+                request.getUriInfo().getQueryParameters().getFirst(PRETTY),
+                request.getAcceptableMediaTypes(),
+                config.jsonPretty());
+        String encoding = config.jsonCompression()
+                ? negotiateEncoding(request.getHeaderString(ACCEPT_ENCODING), DTOStreamingOutput.isBrotliAvailable())
+                : null;
+
+        DTOStreamingOutput output = ((DTOStreamingOutput) response.getEntity()).withFormat(pretty, encoding);
+        if (producesSmile(resourceInfo.getResourceMethod())) {
+            if (!output.isLines() && isPreferredOverJson(request.getAcceptableMediaTypes(), SMILE_TYPE)) {
+                output = output.withMapper(smileMapper);
+                response.getHeaders().putSingle(CONTENT_TYPE, MEDIATYPE_APPLICATION_SMILE);
+            }
+            response.getHeaders().add(VARY, ACCEPT);
+        }
+
+        response.setEntity(output);
+        if (encoding != null) {
+            response.getHeaders().putSingle(CONTENT_ENCODING, encoding);
+        }
+        response.getHeaders().add(VARY, ACCEPT_ENCODING);
+    }
+
+    /**
+     * Copy of the json mapper writing smile. The copy keeps the modules, so StoreKey is still written as a string.
+     * Short values like the store keys repeat in every entry and are written once with back-references.
+     */
+    public static ObjectMapper smileMapper(ObjectMapper mapper) {
+        return mapper.copyWith(
+                SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build());
+    }
+
+    private static boolean producesSmile(Method method) {
+        Produces produces = method == null ? null : method.getAnnotation(Produces.class);
+        return produces != null && Arrays.asList(produces.value()).contains(MEDIATYPE_APPLICATION_SMILE);
+    }
+
+    /**
+     * Whether the type comes before json in the accepted media types, which are sorted by preference. A client asking
+     * for anything (or nothing) gets json.
+     */
+    static boolean isPreferredOverJson(List<MediaType> accepted, MediaType type) {
+        if (accepted != null) {
+            for (MediaType acceptedType : accepted) {
+                if (acceptedType.isWildcardType() || APPLICATION_JSON_TYPE.isCompatible(acceptedType)) {
+                    return false;
+                }
+                if (type.isCompatible(acceptedType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean isPretty(String param, List<MediaType> accepted, boolean defaultPretty) {
+        if (param != null && !param.isBlank()) {
+            return Boolean.parseBoolean(param.trim());
+        }
+        if (accepted != null) {
+            for (MediaType type : accepted) {
+                String value = type.getParameters().get(PRETTY);
+                if (value != null) {
+                    return Boolean.parseBoolean(value.trim());
+                }
+            }
+        }
+        return defaultPretty;
+    }
+
+    /**
+     * The content-encoding to use for an Accept-Encoding header, or null to send the json as is. Codings with q=0 are
+     * refused, otherwise br is preferred over gzip whatever their q values, since both beat identity for json.
+     */
+    static String negotiateEncoding(String acceptEncoding, boolean brotliAvailable) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+
+        Boolean gzip = null;
+        Boolean brotli = null;
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            boolean accepted = !isRefused(parts);
+            if (GZIP.equals(name)) {
+                gzip = accepted;
+            } else if (BROTLI.equals(name)) {
+                brotli = accepted;
+            } else if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+
+        if (Boolean.TRUE.equals(brotli) && brotliAvailable) {
+            return BROTLI;
+        }
+        if (gzip == null ? wildcard : gzip) {
+            return GZIP;
+        }
+        return null;
+    }
+
+    private static boolean isRefused(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -15,10 +15,17 @@
  */
 package org.jboss.pnc.service.tracking.jaxrs;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.commons.io.output.CountingOutputStream;
 import org.jboss.pnc.service.tracking.data.metrics.TraceManager;
+import org.jboss.pnc.service.tracking.util.jackson.EntryFields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,27 +37,122 @@ import static org.jboss.pnc.service.tracking.data.metrics.NameUtils.getName;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Writes a DTO as json to the response. The output is pretty-printed as configured on the mapper unless a compact copy
+ * is made with {@link #withFormat(boolean, String)}, which can also encode the json with gzip or br. Binary formats are
+ * written by a copy with a mapper of another data format, see {@link #withMapper(ObjectMapper)}. An iterator DTO can be
+ * written as ndjson, one compact element per line, see {@link #asLines()}.
+ */
 public class DTOStreamingOutput implements StreamingOutput {
+    public static final String GZIP = "gzip";
+
+    public static final String BROTLI = "br";
+
     private static final String TRANSFER_METRIC_NAME = "indy.transferred.dto";
 
     private static final double NANOS_PER_SEC = 1000000000.0;
 
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private static final String LINE_SEPARATOR = "\n";
+
+    // quality 4 of 11 compresses json close to gzip -9 at a fraction of the cpu of the higher levels
+    private static final int BROTLI_QUALITY = 4;
+
     private final ObjectMapper mapper;
 
     private final Object dto;
 
     private final TraceManager traceManager;
 
+    private final boolean pretty;
+
+    private final String encoding;
+
+    private final boolean lines;
+
+    private final Set<String> fields;
+
     public DTOStreamingOutput(final ObjectMapper mapper, final Object dto, final TraceManager traceManager) {
+        this(mapper, dto, traceManager, true, null, false, null);
+    }
+
+    private DTOStreamingOutput(
+            final ObjectMapper mapper,
+            final Object dto,
+            final TraceManager traceManager,
+            final boolean pretty,
+            final String encoding,
+            final boolean lines,
+            final Set<String> fields) {
         this.mapper = mapper;
         this.dto = dto;
         this.traceManager = traceManager;
+        this.pretty = pretty;
+        this.encoding = encoding;
+        this.lines = lines;
+        this.fields = fields;
+    }
+
+    /**
+     * Copy of this output which writes the json compact if pretty is false, and encoded with the content-encoding
+     * {@link #GZIP} or {@link #BROTLI} (null or anything else writes it as is).
+     */
+    public DTOStreamingOutput withFormat(final boolean pretty, final String encoding) {
+        return new DTOStreamingOutput(mapper, dto, traceManager, pretty, encoding, lines, fields);
+    }
+
+    /**
+     * Copy of this output which writes only the given fields of the report entries, see {@link EntryFields}. Null
+     * writes all of them.
+     */
+    public DTOStreamingOutput withFields(final Set<String> fields) {
+        return new DTOStreamingOutput(mapper, dto, traceManager, pretty, encoding, lines, fields);
+    }
+
+    /**
+     * Copy of this output which writes the DTO with the given mapper, e.g. a smile copy of the json mapper.
+     */
+    public DTOStreamingOutput withMapper(final ObjectMapper mapper) {
+        return new DTOStreamingOutput(mapper, dto, traceManager, pretty, encoding, lines, fields);
+    }
+
+    /**
+     * Copy of this output which writes the elements of the iterator DTO as ndjson: each one compact, followed by a new
+     * line. Elements are written as they are pulled, so the iterator can page through the storage.
+     */
+    public DTOStreamingOutput asLines() {
+        if (!(dto instanceof Iterator)) {
+            throw new IllegalStateException("Only an iterator can be written as lines, got: " + dto.getClass());
+        }
+        return new DTOStreamingOutput(mapper, dto, traceManager, false, encoding, true, fields);
+    }
+
+    /**
+     * Whether br can be used as content-encoding, the native library of brotli4j is not shipped for every platform.
+     */
+    public static boolean isBrotliAvailable() {
+        try {
+            return Brotli4jLoader.isAvailable();
+        } catch (LinkageError e) {
+            return false;
+        }
     }
 
+    /**
+     * The DTO as json, or only its type for an iterator DTO, which rendering would drain before the response is
+     * written.
+     */
     @Override
     public String toString() {
+        if (dto instanceof Iterator) {
+            return getClass().getSimpleName() + "[" + dto.getClass().getName() + (lines ? ", lines" : "") + "]";
+        }
         try {
             return mapper.writeValueAsString(dto);
         } catch (JsonProcessingException e) {
@@ -64,22 +166,38 @@ public class DTOStreamingOutput implements StreamingOutput {
     public void write(final OutputStream outputStream) throws IOException, WebApplicationException {
         AtomicReference<IOException> ioe = new AtomicReference<>();
         traceManager.wrapWithStandardMetrics((span) -> {
-            CountingOutputStream cout = new CountingOutputStream(outputStream);
+            CountingOutputStream encoded = new CountingOutputStream(outputStream);
+            CountingOutputStream cout = encoded;
             long start = System.nanoTime();
-            try {
-                mapper.writeValue(cout, dto);
+            try (OutputStream out = encode(encoded)) {
+                if (out != encoded) {
+                    cout = new CountingOutputStream(out);
+                }
+                if (lines) {
+                    writeLines(cout);
+                } else {
+                    getWriter().writeValue(cout, dto);
+                }
             } catch (IOException e) {
                 ioe.set(e);
             } finally {
                 Logger logger = LoggerFactory.getLogger(getClass());
-                logger.trace("Wrote: {} bytes", cout.getByteCount());
+                logger.trace("Wrote: {} bytes, {} bytes encoded", cout.getByteCount(), encoded.getByteCount());
 
                 String name = getName(TRANSFER_METRIC_NAME, getDefaultName(dto.getClass(), "write"), "size");
 
                 long end = System.nanoTime();
                 double elapsed = (end - start) / NANOS_PER_SEC;
 
-                span.setAttribute(name, Math.round(cout.getByteCount() / elapsed));
+                span.setAttribute(name, Math.round(encoded.getByteCount() / elapsed));
+                span.setAttribute(name + ".bytes", cout.getByteCount());
+                if (cout != encoded) {
+                    span.setAttribute(name + ".encoding", encoding);
+                    span.setAttribute(name + ".encoded", encoded.getByteCount());
+                    if (encoded.getByteCount() > 0) {
+                        span.setAttribute(name + ".ratio", (double) cout.getByteCount() / encoded.getByteCount());
+                    }
+                }
             }
 
             return null;
@@ -91,6 +209,52 @@ public class DTOStreamingOutput implements StreamingOutput {
         }
     }
 
+    private void writeLines(final OutputStream out) throws IOException {
+        ObjectWriter writer = getWriter().withRootValueSeparator(LINE_SEPARATOR);
+        try (JsonGenerator generator = writer.createGenerator(out)) {
+            Iterator<?> elements = (Iterator<?>) dto;
+            boolean empty = true;
+            while (elements.hasNext()) {
+                writer.writeValue(generator, elements.next());
+                empty = false;
+            }
+            if (!empty) {
+                generator.writeRaw(LINE_SEPARATOR);
+            }
+        }
+    }
+
+    private ObjectWriter getWriter() {
+        ObjectWriter writer = fields == null ? mapper.writer() : EntryFields.writer(mapper, fields);
+        return pretty && !lines ? writer : writer.without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    private OutputStream encode(final OutputStream outputStream) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+        }
+        if (BROTLI.equals(encoding)) {
+            return new BrotliOutputStream(outputStream, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+        }
+        return outputStream;
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public boolean isLines() {
+        return lines;
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
     public Object getDto() {
         return dto;
     }
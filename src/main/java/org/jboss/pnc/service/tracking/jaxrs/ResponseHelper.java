@@ -31,9 +31,12 @@ import jakarta.ws.rs.core.Response.ResponseBuilder;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static org.jboss.pnc.service.tracking.jaxrs.AdminResource.MEDIATYPE_APPLICATION_NDJSON;
 
 @ApplicationScoped
 public class ResponseHelper {
@@ -64,6 +67,28 @@ public class ResponseHelper {
         return builder.build();
     }
 
+    /**
+     * Ok response writing only the given fields of the report entries, or all of them if fields is null.
+     */
+    public Response formatOkResponseWithJsonFields(final Object dto, final Set<String> fields) {
+        if (dto == null) {
+            return Response.noContent().build();
+        }
+
+        return Response.ok(new DTOStreamingOutput(mapper, dto, metricsManager).withFields(fields), APPLICATION_JSON)
+                .build();
+    }
+
+    /**
+     * Ok response writing the elements as ndjson while they are pulled from the iterator, with only the given fields of
+     * the report entries or all of them if fields is null.
+     */
+    public Response formatOkResponseWithJsonLines(final Iterator<?> elements, final Set<String> fields) {
+        return Response.ok(
+                new DTOStreamingOutput(mapper, elements, metricsManager).withFields(fields).asLines(),
+                MEDIATYPE_APPLICATION_NDJSON).build();
+    }
+
     public void throwError(final Throwable error) {
         formulateResponse(0, error, null, true, null);
     }
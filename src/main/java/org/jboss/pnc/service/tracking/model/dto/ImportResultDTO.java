@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.model.dto;
+
+import java.util.Map;
+
+/**
+ * Progress of a record import, final once done is set. Records which failed to import are counted in failedRecords and
+ * not in records and entries; the first ones are listed in failures with their error.
+ */
+public class ImportResultDTO {
+
+    private boolean done;
+
+    private long records;
+
+    private long entries;
+
+    private long bytes;
+
+    private long elapsedMillis;
+
+    private double recordsPerSecond;
+
+    private double entriesPerSecond;
+
+    private long failedRecords;
+
+    private Map<String, String> failures;
+
+    public ImportResultDTO() {
+    }
+
+    public ImportResultDTO(
+            final boolean done,
+            final long records,
+            final long entries,
+            final long bytes,
+            final long elapsedMillis,
+            final long failedRecords,
+            final Map<String, String> failures) {
+        this.done = done;
+        this.records = records;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.failedRecords = failedRecords;
+        this.failures = failures;
+        double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        this.recordsPerSecond = records / seconds;
+        this.entriesPerSecond = entries / seconds;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public void setRecords(long records) {
+        this.records = records;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void setEntries(long entries) {
+        this.entries = entries;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public double getEntriesPerSecond() {
+        return entriesPerSecond;
+    }
+
+    public void setEntriesPerSecond(double entriesPerSecond) {
+        this.entriesPerSecond = entriesPerSecond;
+    }
+
+    public long getFailedRecords() {
+        return failedRecords;
+    }
+
+    public void setFailedRecords(long failedRecords) {
+        this.failedRecords = failedRecords;
+    }
+
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(Map<String, String> failures) {
+        this.failures = failures;
+    }
+}
@@ -16,6 +16,7 @@
 package org.jboss.pnc.service.tracking.model.dto;
 
 import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
 import org.jboss.pnc.service.tracking.model.StoreKey;
 
 import java.util.Set;
@@ -41,6 +42,9 @@ public class TrackedContentEntryDTO implements Comparable<TrackedContentEntryDTO
 
     private Set<Long> timestamps;
 
+    // only set on the lines of the ndjson record, which mixes the uploads and downloads
+    private StoreEffect effect;
+
     public TrackedContentEntryDTO() {
     }
 
@@ -200,4 +204,12 @@ public class TrackedContentEntryDTO implements Comparable<TrackedContentEntryDTO
     public void setTimestamps(final Set<Long> timestamps) {
         this.timestamps = timestamps;
     }
+
+    public StoreEffect getEffect() {
+        return effect;
+    }
+
+    public void setEffect(final StoreEffect effect) {
+        this.effect = effect;
+    }
 }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+
+import java.util.Iterator;
+
+/**
+ * Same JSON representation as {@link TrackedContentDTO}, but the entries are pulled from the iterators while the DTO
+ * is being written, so a record is never held in memory as a whole. It can only be written once.
+ */
+@Schema(type = SchemaType.OBJECT, description = "Tracking record rendered while it is read from the storage")
+public class TrackedContentStreamDTO {
+
+    @JsonProperty
+    private final TrackingKey key;
+
+    @JsonProperty
+    private final Iterator<TrackedContentEntryDTO> uploads;
+
+    @JsonProperty
+    private final Iterator<TrackedContentEntryDTO> downloads;
+
+    public TrackedContentStreamDTO(
+            final TrackingKey key,
+            final Iterator<TrackedContentEntryDTO> uploads,
+            final Iterator<TrackedContentEntryDTO> downloads) {
+        this.key = key;
+        this.uploads = uploads;
+        this.downloads = downloads;
+    }
+
+    public TrackingKey getKey() {
+        return key;
+    }
+
+    public Iterator<TrackedContentEntryDTO> getUploads() {
+        return uploads;
+    }
+
+    public Iterator<TrackedContentEntryDTO> getDownloads() {
+        return downloads;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !uploads.hasNext() && !downloads.hasNext();
+    }
+}
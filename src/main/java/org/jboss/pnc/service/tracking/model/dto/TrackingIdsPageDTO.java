@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One page of tracking ids. Pass nextPageToken back as pageToken to get the following page, it is absent on the last
+ * one.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrackingIdsPageDTO {
+
+    private List<String> inProgress;
+
+    private List<String> sealed;
+
+    private String nextPageToken;
+
+    public TrackingIdsPageDTO() {
+    }
+
+    public TrackingIdsPageDTO(final List<String> inProgress, final List<String> sealed, final String nextPageToken) {
+        this.inProgress = inProgress;
+        this.sealed = sealed;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<String> getInProgress() {
+        return inProgress;
+    }
+
+    public void setInProgress(List<String> inProgress) {
+        this.inProgress = inProgress;
+    }
+
+    public List<String> getSealed() {
+        return sealed;
+    }
+
+    public void setSealed(List<String> sealed) {
+        this.sealed = sealed;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries an asynchronous task a bounded number of times, with a delay doubled after each attempt. Nothing blocks
+ * while waiting, the next attempt is started from the delayed executor of {@link CompletableFuture}.
+ */
+public final class AsyncRetry {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRetry.class);
+
+    private AsyncRetry() {
+    }
+
+    /**
+     * Run the task, and again while it fails with a retryable error and retries are left.
+     *
+     * @return completed as the last attempt, exceptionally with the unwrapped cause of its failure
+     */
+    public static <T> CompletableFuture<T> retry(
+            String description,
+            int retries,
+            long delayMillis,
+            Predicate<Throwable> retryable,
+            Supplier<? extends CompletionStage<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(description, retries, delayMillis, retryable, task, result);
+        return result;
+    }
+
+    private static <T> void attempt(
+            String description,
+            int retries,
+            long delayMillis,
+            Predicate<Throwable> retryable,
+            Supplier<? extends CompletionStage<T>> task,
+            CompletableFuture<T> result) {
+        CompletionStage<T> stage;
+        try {
+            stage = task.get();
+        } catch (Throwable e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((r, e) -> {
+            if (e == null) {
+                result.complete(r);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (retries <= 0 || !retryable.test(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            logger.warn(
+                    "Failed to {}, retrying in {} ms, {} retries left. Reason: {}",
+                    description,
+                    delayMillis,
+                    retries,
+                    cause.getMessage());
+            Executor executor = delayMillis > 0
+                    ? CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS)
+                    : Runnable::run;
+            executor.execute(() -> attempt(description, retries - 1, delayMillis * 2, retryable, task, result));
+        });
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.model.StoreKey;
+
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the local content urls of the entries of a report. The result is the same as
+ * {@code UrlUtils.buildUrl(baseUrl, "content", packageType, type, name, path)}, but the url of each store is built and
+ * parsed once, the path of each entry is then only appended to it. An instance is meant for one report, it is not
+ * thread-safe.
+ */
+public final class LocalUrlBuilder {
+    private final String baseUrl;
+
+    private final Map<StoreKey, String> prefixes = new HashMap<>();
+
+    public LocalUrlBuilder(final String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String build(final StoreKey storeKey, final String path) throws MalformedURLException {
+        String prefix = prefixes.get(storeKey);
+        if (prefix == null) {
+            prefix = UrlUtils.buildUrl(
+                    baseUrl,
+                    "content",
+                    storeKey.getPackageType(),
+                    storeKey.getType().singularEndpointName(),
+                    storeKey.getName());
+            prefixes.put(storeKey, prefix);
+        }
+        return append(prefix, path);
+    }
+
+    // same joining as UrlUtils.buildUrl, which does not change the path part when parsing the url
+    private static String append(final String prefix, final String path) {
+        if (path == null || path.trim().length() < 1) {
+            return prefix;
+        }
+        String part = path.trim();
+        if (part.startsWith("/")) {
+            part = part.substring(1);
+        }
+        if (prefix.length() > 0 && prefix.charAt(prefix.length() - 1) != '/') {
+            return prefix + "/" + part;
+        }
+        return prefix + part;
+    }
+}
@@ -0,0 +1,562 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContent;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact binary format of a tracking record, used by export/import instead of java serialization.
+ * <p>
+ * A record starts with the magic bytes "FOLO" and a format version byte, followed by the tracking id, the uploads and
+ * the downloads. Numbers are unsigned varints (signed ones zigzag encoded) and strings are length-prefixed UTF-8. Store
+ * keys and origin url prefixes are written once per record and then referred to by index, paths are front coded
+ * against the previous entry, hex checksums are written as bytes and timestamps as deltas. Entries are written sorted
+ * by store key and path so consecutive paths share long prefixes.
+ * <p>
+ * Store types and access channels are written by name, once per record as part of the store key and access channel
+ * tables, so reordering or adding enum constants does not change how stored records decode. Version 1 wrote their
+ * ordinals and is still read with the order of the constants it was written with.
+ */
+public final class TrackedContentCodec {
+    public static final int VERSION = 2;
+
+    private static final int VERSION_ORDINALS = 1;
+
+    private static final byte[] MAGIC = { 'F', 'O', 'L', 'O' };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int HAS_SIZE = 1;
+
+    private static final int HAS_MD5 = 1 << 1;
+
+    private static final int HAS_SHA1 = 1 << 2;
+
+    private static final int HAS_SHA256 = 1 << 3;
+
+    private static final int HAS_TIMESTAMPS = 1 << 4;
+
+    private static final int ORIGIN_NONE = 0;
+
+    private static final int ORIGIN_PREFIX = 1;
+
+    private static final int ORIGIN_LITERAL = 2;
+
+    private static final Comparator<TrackedContentEntry> ENTRY_ORDER = Comparator
+            .comparing(TrackedContentEntry::getStoreKey, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TrackedContentEntry::getPath, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    // the constants in the order version 1 wrote their ordinals, do not change
+    private static final StoreType[] V1_STORE_TYPES = { StoreType.group, StoreType.remote, StoreType.hosted };
+
+    private static final AccessChannel[] V1_ACCESS_CHANNELS = { AccessChannel.GENERIC_PROXY, AccessChannel.NATIVE,
+            AccessChannel.MAVEN_REPO };
+
+    private TrackedContentCodec() {
+    }
+
+    /**
+     * Check whether the stream is at the start of a record in this format, without consuming anything.
+     *
+     * @param in a stream supporting mark/reset
+     */
+    public static boolean isEncoded(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        byte[] head = in.readNBytes(MAGIC.length);
+        in.reset();
+        return Arrays.equals(head, MAGIC);
+    }
+
+    /**
+     * Write the record to the stream, which is flushed but not closed.
+     */
+    public static void encode(TrackedContent record, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, record.getKey().getId());
+
+        Writer writer = new Writer(out);
+        writer.writeEntries(record.getUploads());
+        writer.writeEntries(record.getDownloads());
+        out.flush();
+    }
+
+    /**
+     * Read a record from the stream, without reading past its end.
+     */
+    public static TrackedContent decode(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an encoded tracking record");
+        }
+        int version = in.readUnsignedByte();
+        if (version > VERSION) {
+            throw new IOException(
+                    "Unsupported tracking record format version: " + version + ", the latest known is " + VERSION);
+        }
+        TrackingKey key = new TrackingKey(readString(in));
+
+        Reader reader = new Reader(in, key, version);
+        Set<TrackedContentEntry> uploads = reader.readEntries(StoreEffect.UPLOAD);
+        Set<TrackedContentEntry> downloads = reader.readEntries(StoreEffect.DOWNLOAD);
+        return new TrackedContent(key, uploads, downloads);
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+
+        private final Map<StoreKey, Integer> storeKeys = new HashMap<>();
+
+        private final Map<AccessChannel, Integer> accessChannels = new HashMap<>();
+
+        private final Map<String, Integer> originPrefixes = new HashMap<>();
+
+        private String previousPath = "";
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void writeEntries(Set<TrackedContentEntry> entries) throws IOException {
+            if (entries == null) {
+                writeVarLong(out, 0);
+                return;
+            }
+            List<TrackedContentEntry> sorted = new ArrayList<>(entries);
+            sorted.sort(ENTRY_ORDER);
+            writeVarLong(out, sorted.size());
+            for (TrackedContentEntry entry : sorted) {
+                writeEntry(entry);
+            }
+        }
+
+        private void writeEntry(TrackedContentEntry entry) throws IOException {
+            writeStoreKey(entry.getStoreKey());
+            writeAccessChannel(entry.getAccessChannel());
+            writePath(entry.getPath());
+            writeOriginUrl(entry.getOriginUrl(), entry.getPath());
+
+            int flags = (entry.getSize() != null ? HAS_SIZE : 0) | (entry.getMd5() != null ? HAS_MD5 : 0)
+                    | (entry.getSha1() != null ? HAS_SHA1 : 0) | (entry.getSha256() != null ? HAS_SHA256 : 0)
+                    | (entry.getTimestamps() != null ? HAS_TIMESTAMPS : 0);
+            out.writeByte(flags);
+            if (entry.getSize() != null) {
+                writeVarLong(out, zigzag(entry.getSize()));
+            }
+            if (entry.getMd5() != null) {
+                writeChecksum(out, entry.getMd5());
+            }
+            if (entry.getSha1() != null) {
+                writeChecksum(out, entry.getSha1());
+            }
+            if (entry.getSha256() != null) {
+                writeChecksum(out, entry.getSha256());
+            }
+            writeVarLong(out, zigzag(entry.getIndex()));
+            if (entry.getTimestamps() != null) {
+                writeTimestamps(entry.getTimestamps());
+            }
+        }
+
+        private void writeStoreKey(StoreKey storeKey) throws IOException {
+            Integer ref = storeKeys.get(storeKey);
+            if (ref != null) {
+                writeVarLong(out, ref);
+                return;
+            }
+            // a reference to the next free slot declares a new key
+            writeVarLong(out, storeKeys.size());
+            storeKeys.put(storeKey, storeKeys.size());
+            if (storeKey == null) {
+                out.writeByte(0);
+                return;
+            }
+            out.writeByte(1);
+            writeString(out, storeKey.getType() == null ? null : storeKey.getType().name());
+            writeString(out, storeKey.getPackageType());
+            writeString(out, storeKey.getName());
+        }
+
+        private void writeAccessChannel(AccessChannel channel) throws IOException {
+            if (channel == null) {
+                writeVarLong(out, 0);
+                return;
+            }
+            // references are shifted by one for null, the next free slot declares a new channel
+            Integer ref = accessChannels.get(channel);
+            if (ref != null) {
+                writeVarLong(out, ref + 1L);
+                return;
+            }
+            writeVarLong(out, accessChannels.size() + 1L);
+            accessChannels.put(channel, accessChannels.size());
+            writeString(out, channel.name());
+        }
+
+        private void writePath(String path) throws IOException {
+            if (path == null) {
+                writeVarLong(out, 0);
+                writeString(out, null);
+                return;
+            }
+            int shared = commonPrefix(previousPath, path);
+            writeVarLong(out, shared);
+            writeString(out, path.substring(shared));
+            previousPath = path;
+        }
+
+        private void writeOriginUrl(String originUrl, String path) throws IOException {
+            if (originUrl == null) {
+                out.writeByte(ORIGIN_NONE);
+            } else if (path != null && !path.isEmpty() && originUrl.endsWith(path)) {
+                out.writeByte(ORIGIN_PREFIX);
+                String prefix = originUrl.substring(0, originUrl.length() - path.length());
+                Integer ref = originPrefixes.get(prefix);
+                if (ref != null) {
+                    writeVarLong(out, ref);
+                } else {
+                    writeVarLong(out, originPrefixes.size());
+                    originPrefixes.put(prefix, originPrefixes.size());
+                    writeString(out, prefix);
+                }
+            } else {
+                out.writeByte(ORIGIN_LITERAL);
+                writeString(out, originUrl);
+            }
+        }
+
+        private void writeTimestamps(Set<Long> timestamps) throws IOException {
+            writeVarLong(out, timestamps.size());
+            long previous = 0;
+            for (Long timestamp : new TreeSet<>(timestamps)) {
+                writeVarLong(out, zigzag(timestamp - previous));
+                previous = timestamp;
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+
+        private final TrackingKey key;
+
+        private final int version;
+
+        private final List<StoreKey> storeKeys = new ArrayList<>();
+
+        private final List<AccessChannel> accessChannels = new ArrayList<>();
+
+        private final List<String> originPrefixes = new ArrayList<>();
+
+        private String previousPath = "";
+
+        private Reader(DataInputStream in, TrackingKey key, int version) {
+            this.in = in;
+            this.key = key;
+            this.version = version;
+        }
+
+        private Set<TrackedContentEntry> readEntries(StoreEffect effect) throws IOException {
+            int count = readCount(in);
+            Set<TrackedContentEntry> entries = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                entries.add(readEntry(effect));
+            }
+            return entries;
+        }
+
+        private TrackedContentEntry readEntry(StoreEffect effect) throws IOException {
+            TrackedContentEntry entry = new TrackedContentEntry();
+            entry.setTrackingKey(key);
+            entry.setEffect(effect);
+            entry.setStoreKey(readStoreKey());
+            entry.setAccessChannel(readAccessChannel());
+            entry.setPath(readPath());
+            entry.setOriginUrl(readOriginUrl(entry.getPath()));
+
+            int flags = in.readUnsignedByte();
+            if ((flags & HAS_SIZE) != 0) {
+                entry.setSize(unzigzag(readVarLong(in)));
+            }
+            if ((flags & HAS_MD5) != 0) {
+                entry.setMd5(readChecksum(in));
+            }
+            if ((flags & HAS_SHA1) != 0) {
+                entry.setSha1(readChecksum(in));
+            }
+            if ((flags & HAS_SHA256) != 0) {
+                entry.setSha256(readChecksum(in));
+            }
+            entry.setIndex(unzigzag(readVarLong(in)));
+            if ((flags & HAS_TIMESTAMPS) != 0) {
+                entry.setTimestamps(readTimestamps());
+            }
+            return entry;
+        }
+
+        private StoreKey readStoreKey() throws IOException {
+            int ref = readCount(in);
+            if (ref < storeKeys.size()) {
+                return storeKeys.get(ref);
+            }
+            if (ref > storeKeys.size()) {
+                throw new IOException("Invalid store key reference: " + ref);
+            }
+            StoreKey storeKey = null;
+            int type = in.readUnsignedByte();
+            if (type != 0) {
+                StoreType storeType;
+                if (version == VERSION_ORDINALS) {
+                    storeType = type == 1 ? null : V1_STORE_TYPES[checkIndex(type - 2, V1_STORE_TYPES.length)];
+                } else {
+                    storeType = valueOf(StoreType.class, readString(in));
+                }
+                String packageType = readString(in);
+                String name = readString(in);
+                storeKey = new StoreKey(packageType, storeType, name);
+            }
+            storeKeys.add(storeKey);
+            return storeKey;
+        }
+
+        private AccessChannel readAccessChannel() throws IOException {
+            if (version == VERSION_ORDINALS) {
+                int channel = in.readUnsignedByte();
+                return channel == 0 ? null
+                        : V1_ACCESS_CHANNELS[checkIndex(channel - 1, V1_ACCESS_CHANNELS.length)];
+            }
+            int ref = readCount(in);
+            if (ref == 0) {
+                return null;
+            }
+            if (ref <= accessChannels.size()) {
+                return accessChannels.get(ref - 1);
+            }
+            if (ref > accessChannels.size() + 1) {
+                throw new IOException("Invalid access channel reference: " + ref);
+            }
+            AccessChannel channel = valueOf(AccessChannel.class, readString(in));
+            accessChannels.add(channel);
+            return channel;
+        }
+
+        private String readPath() throws IOException {
+            int shared = readCount(in);
+            String suffix = readString(in);
+            if (suffix == null) {
+                return null;
+            }
+            if (shared > previousPath.length()) {
+                throw new IOException("Invalid shared path prefix length: " + shared);
+            }
+            previousPath = previousPath.substring(0, shared) + suffix;
+            return previousPath;
+        }
+
+        private String readOriginUrl(String path) throws IOException {
+            int mode = in.readUnsignedByte();
+            switch (mode) {
+                case ORIGIN_NONE:
+                    return null;
+                case ORIGIN_PREFIX:
+                    int ref = readCount(in);
+                    if (ref == originPrefixes.size()) {
+                        originPrefixes.add(readString(in));
+                    } else if (ref > originPrefixes.size()) {
+                        throw new IOException("Invalid origin url reference: " + ref);
+                    }
+                    return originPrefixes.get(ref) + path;
+                case ORIGIN_LITERAL:
+                    return readString(in);
+                default:
+                    throw new IOException("Invalid origin url mode: " + mode);
+            }
+        }
+
+        private Set<Long> readTimestamps() throws IOException {
+            int count = readCount(in);
+            Set<Long> timestamps = new HashSet<>();
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += unzigzag(readVarLong(in));
+                timestamps.add(previous);
+            }
+            return timestamps;
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        // do not split a surrogate pair between the prefix and the suffix
+        if (i > 0 && i < b.length() && Character.isHighSurrogate(b.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static <E extends Enum<E>> E valueOf(Class<E> type, String name) throws IOException {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown " + type.getSimpleName() + ": " + name, e);
+        }
+    }
+
+    private static int checkIndex(int index, int length) throws IOException {
+        if (index < 0 || index >= length) {
+            throw new IOException("Invalid enum ordinal: " + index);
+        }
+        return index;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Lowercase hex checksums are written as their bytes, anything else as a string. The low bit of the length tells
+     * which one follows.
+     */
+    private static void writeChecksum(DataOutputStream out, String value) throws IOException {
+        if (isLowerHex(value)) {
+            byte[] bytes = new byte[value.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (Character.digit(value.charAt(i * 2), 16) << 4
+                        | Character.digit(value.charAt(i * 2 + 1), 16));
+            }
+            writeVarLong(out, ((long) bytes.length << 1) | 1);
+            out.write(bytes);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarLong(out, (long) bytes.length << 1);
+            out.write(bytes);
+        }
+    }
+
+    private static String readChecksum(DataInputStream in) throws IOException {
+        int header = readCount(in);
+        byte[] bytes = new byte[header >>> 1];
+        in.readFully(bytes);
+        if ((header & 1) == 0) {
+            return new String(bytes, UTF_8);
+        }
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static boolean isLowerHex(String value) {
+        if (value.isEmpty() || value.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + value);
+        }
+        return (int) value;
+    }
+}
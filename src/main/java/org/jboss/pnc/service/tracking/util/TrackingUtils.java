@@ -15,10 +15,12 @@
  */
 package org.jboss.pnc.service.tracking.util;
 
+import org.jboss.pnc.service.tracking.Constants.EXPORT_FORMAT;
 import org.jboss.pnc.service.tracking.model.TrackedContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -28,7 +30,9 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -40,21 +44,52 @@ import static org.jboss.pnc.service.tracking.Constants.TRACKING_TYPE.SEALED;
 public class TrackingUtils {
     private static final Logger logger = LoggerFactory.getLogger(TrackingUtils.class);
 
+    private static final int ENTRY_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Write sealed records to a zip file.
      */
     public static void zipTrackedContent(File out, Set<TrackedContent> sealed) throws IOException {
         logger.info("Writing sealed zip to: '{}'", out.getAbsolutePath());
 
-        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(out))) {
-            for (TrackedContent f : sealed) {
-                String name = SEALED.getValue() + "/" + f.getKey().getId();
+        try (OutputStream stream = new FileOutputStream(out)) {
+            zipTrackedContent(stream, sealed.iterator(), EXPORT_FORMAT.JAVA, null);
+        }
+    }
 
-                logger.trace("Adding {} to zip", name);
-                zip.putNextEntry(new ZipEntry(name));
+    /**
+     * Write sealed records to a zip stream as the iterator provides them. The stream is finished but not closed.
+     *
+     * @param format format of the zip entries
+     * @param written called with each record once its entry is complete, may be null
+     * @return count of records written
+     */
+    public static int zipTrackedContent(
+            OutputStream out,
+            Iterator<TrackedContent> sealed,
+            EXPORT_FORMAT format,
+            Consumer<TrackedContent> written) throws IOException {
+        int count = 0;
+        ZipOutputStream zip = new ZipOutputStream(out);
+        while (sealed.hasNext()) {
+            TrackedContent f = sealed.next();
+            String name = SEALED.getValue() + "/" + f.getKey().getId();
+
+            logger.trace("Adding {} to zip", name);
+            zip.putNextEntry(new ZipEntry(name));
+            if (format == EXPORT_FORMAT.BINARY) {
+                TrackedContentCodec.encode(f, zip);
+            } else {
                 copy(toInputStream(f), zip);
             }
+            zip.closeEntry();
+            count++;
+            if (written != null) {
+                written.accept(f);
+            }
         }
+        zip.finish();
+        return count;
     }
 
     public static void backupTrackedContent(File dir, Set<TrackedContent> sealed) throws IOException {
@@ -69,7 +104,8 @@ public class TrackingUtils {
     }
 
     /**
-     * Read records from input stream and execute consumer function.
+     * Read records from input stream and execute consumer function. The format of each entry is detected from its
+     * first bytes, so zips exported in any format, including the java serialized ones, can be read.
      * 
      * @param inputStream
      * @param consumer
@@ -77,21 +113,36 @@ public class TrackingUtils {
      */
     public static int readZipInputStreamAnd(InputStream inputStream, Consumer<TrackedContent> consumer)
             throws IOException, ClassNotFoundException {
+        return readZipInputStreamAnd(inputStream, consumer, null);
+    }
+
+    /**
+     * Read records from input stream and execute consumer function, going on with the next entry when one can not be
+     * decoded.
+     *
+     * @param onError called with the tracking id of each entry which can not be decoded, its name without the sealed/
+     *        directory, and the error, rethrows the error when null
+     * @return count of records read from the stream
+     */
+    public static int readZipInputStreamAnd(
+            InputStream inputStream,
+            Consumer<TrackedContent> consumer,
+            BiConsumer<String, Exception> onError) throws IOException, ClassNotFoundException {
         int count = 0;
         try (ZipInputStream stream = new ZipInputStream(inputStream)) {
             ZipEntry entry;
             while ((entry = stream.getNextEntry()) != null) {
-                logger.trace("Read entry: %s, len: %d", entry.getName(), entry.getSize());
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                int len;
-                byte[] buffer = new byte[1024];
-                while ((len = stream.read(buffer)) > 0) {
-                    bos.write(buffer, 0, len);
+                logger.trace("Read entry: {}, len: {}", entry.getName(), entry.getSize());
+                TrackedContent record;
+                try {
+                    record = readTrackedContent(stream);
+                } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                    if (onError == null) {
+                        throw e;
+                    }
+                    onError.accept(toTrackingId(entry.getName()), e);
+                    continue;
                 }
-                bos.close();
-
-                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
-                TrackedContent record = (TrackedContent) ois.readObject();
                 consumer.accept(record);
                 count++;
             }
@@ -99,6 +150,21 @@ public class TrackingUtils {
         return count;
     }
 
+    private static String toTrackingId(String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Read one record from the current entry of a zip, decoding it straight from the stream.
+     */
+    static TrackedContent readTrackedContent(InputStream entry) throws IOException, ClassNotFoundException {
+        InputStream in = new BufferedInputStream(entry, ENTRY_BUFFER_SIZE);
+        if (TrackedContentCodec.isEncoded(in)) {
+            return TrackedContentCodec.decode(in);
+        }
+        return (TrackedContent) new ObjectInputStream(in).readObject();
+    }
+
     public static InputStream toInputStream(TrackedContent f) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util.jackson;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Projection of the report entries on the fields asked with ?fields=. The entry DTO carries no filter, so the
+ * projection is written by a copy of the mapper with a filtering mix-in, made once per mapper.
+ */
+public final class EntryFields {
+    public static final String LOCAL_URL = "localUrl";
+
+    public static final Set<String> NAMES = Set.of(
+            "storeKey",
+            "accessChannel",
+            "path",
+            "originUrl",
+            LOCAL_URL,
+            "md5",
+            "sha256",
+            "sha1",
+            "size",
+            "timestamps",
+            "effect");
+
+    private static final String FILTER_ID = "entry-fields";
+
+    private static final Map<ObjectMapper, ObjectMapper> FILTERING_MAPPERS = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    @JsonFilter(FILTER_ID)
+    private abstract static class FilteredEntry {
+    }
+
+    private EntryFields() {
+    }
+
+    /**
+     * Parse a comma-separated list of entry fields. Returns null (all fields) for a blank list.
+     *
+     * @throws IllegalArgumentException if a field is not one of {@link #NAMES}
+     */
+    public static Set<String> parse(final String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (!NAMES.contains(field)) {
+                throw new IllegalArgumentException("Unknown entry field: " + field + ", expected some of " + NAMES);
+            }
+            parsed.add(field);
+        }
+        return parsed;
+    }
+
+    /**
+     * Whether the local urls have to be built for the fields, null being all of them.
+     */
+    public static boolean includesLocalUrl(final Set<String> fields) {
+        return fields == null || fields.contains(LOCAL_URL);
+    }
+
+    /**
+     * Writer of the mapper which writes only the given fields of {@link TrackedContentEntryDTO}.
+     */
+    public static ObjectWriter writer(final ObjectMapper mapper, final Set<String> fields) {
+        ObjectMapper filtering = FILTERING_MAPPERS.computeIfAbsent(
+                mapper,
+                m -> m.copy().addMixIn(TrackedContentEntryDTO.class, FilteredEntry.class));
+        return filtering.writer(
+                new SimpleFilterProvider().addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.change;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.commonjava.event.common.EventMetadata;
+import org.commonjava.event.file.FileEvent;
+import org.commonjava.event.file.FileEventType;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.pnc.service.tracking.Constants;
+import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
+import org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery;
+import org.jboss.pnc.service.tracking.data.cassandra.TrackingWriteBuffer;
+import org.jboss.pnc.service.tracking.exception.ContentException;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.mockito.ArgumentCaptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FoloTrackingListenerTest
+{
+    private final AtomicInteger acked = new AtomicInteger();
+
+    private final AtomicInteger nacked = new AtomicInteger();
+
+    private FoloTrackingListener listener;
+
+    @BeforeEach
+    public void setUp()
+    {
+        listener = new FoloTrackingListener();
+        listener.trackingConfig = mock( IndyTrackingConfiguration.class );
+        when( listener.trackingConfig.trackGroupContent() ).thenReturn( true );
+        when( listener.trackingConfig.kafkaLanes() ).thenReturn( 4 );
+        when( listener.trackingConfig.kafkaWriteRetries() ).thenReturn( 2 );
+        when( listener.trackingConfig.kafkaWriteRetryDelay() ).thenReturn( 0L );
+        listener.recordManager = mock( CassandraTrackingQuery.class );
+        listener.writeBuffer = mock( TrackingWriteBuffer.class );
+        listener.registry = new SimpleMeterRegistry();
+        listener.init();
+    }
+
+    @Test
+    public void testRetryTransientFailure()
+    {
+        when( listener.recordManager.recordArtifactsAsync( any(), any() ) ).thenReturn( failed() )
+                                                                          .thenReturn( done() );
+
+        handle( "build-1" );
+
+        verify( listener.recordManager, times( 2 ) ).recordArtifactsAsync( eq( new TrackingKey( "build-1" ) ),
+                                                                           any() );
+        assertEquals( 1, acked.get() );
+        assertEquals( 0, nacked.get() );
+    }
+
+    @Test
+    public void testFailedWriteDoesNotStopConsumption()
+    {
+        when( listener.recordManager.recordArtifactsAsync( eq( new TrackingKey( "build-1" ) ), any() ) ).thenReturn(
+                        failed() );
+        when( listener.recordManager.recordArtifactsAsync( eq( new TrackingKey( "build-2" ) ), any() ) ).thenReturn(
+                        done() );
+
+        handle( "build-1" );
+        // the first write and its two retries
+        verify( listener.recordManager, times( 3 ) ).recordArtifactsAsync( eq( new TrackingKey( "build-1" ) ),
+                                                                           any() );
+        assertEquals( 1, nacked.get() );
+        assertEquals( 1.0, listener.registry.get( "tracking.kafka.batch.failures" ).counter().count() );
+
+        handle( "build-2" );
+        assertEquals( 1, acked.get() );
+        assertEquals( 1, nacked.get() );
+    }
+
+    @Test
+    public void testContentErrorNotRetried()
+    {
+        when( listener.recordManager.recordArtifactsAsync( any(), any() ) ).thenReturn(
+                        CompletableFuture.failedFuture( new ContentException( "sealed" ) ) );
+
+        handle( "build-1" );
+
+        verify( listener.recordManager, times( 1 ) ).recordArtifactsAsync( any(), any() );
+        assertEquals( 1, acked.get() );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void testBufferedBatchesMerged()
+    {
+        when( listener.trackingConfig.writeBufferEnabled() ).thenReturn( true );
+        when( listener.trackingConfig.writeBufferMaxEntries() ).thenReturn( 100 );
+        when( listener.recordManager.recordArtifactsAsync( any(), any() ) ).thenReturn( done() );
+        TrackingWriteBuffer buffer = new TrackingWriteBuffer( listener.trackingConfig, listener.recordManager );
+        listener.writeBuffer = buffer;
+
+        // the handler does not wait for the flush, so the next batch is merged into the same buffer
+        assertTrue( send( "build-1" ).toCompletableFuture().isDone() );
+        assertTrue( send( "build-1" ).toCompletableFuture().isDone() );
+        verify( listener.recordManager, never() ).recordArtifactsAsync( any(), any() );
+        assertEquals( 0, acked.get() );
+
+        buffer.flushAll().toCompletableFuture().join();
+
+        ArgumentCaptor<List<TrackedContentEntry>> written = ArgumentCaptor.forClass( List.class );
+        verify( listener.recordManager, times( 1 ) ).recordArtifactsAsync( eq( new TrackingKey( "build-1" ) ),
+                                                                           written.capture() );
+        assertEquals( 1, written.getValue().size() );
+        assertEquals( 2, acked.get() );
+    }
+
+    private void handle( String trackingId )
+    {
+        send( trackingId ).toCompletableFuture().join();
+    }
+
+    private CompletionStage<Void> send( String trackingId )
+    {
+        Message<List<FileEvent>> message = Message.of( List.of( event( trackingId ) ), () -> {
+            acked.incrementAndGet();
+            return done();
+        }, e -> {
+            nacked.incrementAndGet();
+            return done();
+        } );
+        return listener.handleFileEvents( message );
+    }
+
+    private static FileEvent event( String trackingId )
+    {
+        FileEvent event = new FileEvent( FileEventType.ACCESS );
+        EventMetadata metadata = new EventMetadata();
+        metadata.set( Constants.ACCESS_CHANNEL, AccessChannel.NATIVE.toString() );
+        event.setEventMetadata( metadata );
+        event.setSessionId( trackingId );
+        event.setStoreKey( new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" ).toString() );
+        event.setTargetPath( "/a.jar" );
+        return event;
+    }
+
+    private static CompletableFuture<Void> done()
+    {
+        return CompletableFuture.completedFuture( null );
+    }
+
+    private static CompletableFuture<Void> failed()
+    {
+        return CompletableFuture.failedFuture( new IllegalStateException( "test" ) );
+    }
+}
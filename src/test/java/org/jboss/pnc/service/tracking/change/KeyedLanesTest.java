@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.change;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyedLanesTest
+{
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final List<String> started = new ArrayList<>();
+
+    @Test
+    public void testSameKeyRunsInOrder()
+    {
+        KeyedLanes lanes = new KeyedLanes( 4, registry );
+        CompletableFuture<Void> first = new CompletableFuture<>();
+
+        CompletionStage<Void> a = lanes.submit( "key", () -> start( "a", first ) );
+        CompletionStage<Void> b = lanes.submit( "key", () -> start( "b", CompletableFuture.completedFuture( null ) ) );
+        assertEquals( List.of( "a" ), started );
+        assertEquals( 2.0, depth( "key", lanes ) );
+
+        first.complete( null );
+        assertEquals( List.of( "a", "b" ), started );
+        assertTrue( a.toCompletableFuture().isDone() );
+        assertTrue( b.toCompletableFuture().isDone() );
+        assertEquals( 0.0, depth( "key", lanes ) );
+    }
+
+    @Test
+    public void testLanesRunInParallel()
+    {
+        KeyedLanes lanes = new KeyedLanes( 2, registry );
+        String other = laneKey( lanes, 1 );
+
+        lanes.submit( laneKey( lanes, 0 ), () -> start( "a", new CompletableFuture<>() ) );
+        lanes.submit( other, () -> start( "b", new CompletableFuture<>() ) );
+
+        assertEquals( List.of( "a", "b" ), started );
+    }
+
+    @Test
+    public void testFailureDoesNotBlockLane()
+    {
+        KeyedLanes lanes = new KeyedLanes( 1, registry );
+
+        CompletionStage<Void> failed = lanes.submit( "key", () -> {
+            throw new IllegalStateException( "test" );
+        } );
+        CompletionStage<Void> next =
+                        lanes.submit( "key", () -> start( "b", CompletableFuture.completedFuture( null ) ) );
+
+        assertTrue( failed.toCompletableFuture().isCompletedExceptionally() );
+        assertTrue( next.toCompletableFuture().isDone() );
+        assertEquals( List.of( "b" ), started );
+        assertEquals( 2, registry.get( "tracking.kafka.lane.latency" ).tag( "lane", "0" ).timer().count() );
+    }
+
+    private CompletionStage<Void> start( String task, CompletionStage<Void> stage )
+    {
+        started.add( task );
+        return stage;
+    }
+
+    private double depth( String key, KeyedLanes lanes )
+    {
+        String lane = String.valueOf( Math.floorMod( key.hashCode(), lanes.size() ) );
+        return registry.get( "tracking.kafka.lane.depth" ).tag( "lane", lane ).gauge().value();
+    }
+
+    private static String laneKey( KeyedLanes lanes, int lane )
+    {
+        for ( int i = 0;; i++ )
+        {
+            String key = "key-" + i;
+            if ( Math.floorMod( key.hashCode(), lanes.size() ) == lane )
+            {
+                return key;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.CassandraContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import jakarta.inject.Inject;
+
+import static org.jboss.pnc.service.tracking.profile.CassandraFunctionProfile.CASSANDRA_CONTAINER_IMAGE;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@QuarkusTest
+@Testcontainers( disabledWithoutDocker = true )
+public class CassandraInProgressIndexTest
+{
+    @InjectMock
+    CassandraConfiguration config;
+
+    @Inject
+    CassandraTrackingQuery trackingQuery;
+
+    private volatile CassandraContainer<?> cassandraContainer;
+
+    @BeforeEach
+    public void start()
+    {
+        this.cassandraContainer = new CassandraContainer( CASSANDRA_CONTAINER_IMAGE );
+        this.cassandraContainer.start();
+        when( config.getCassandraHost() ).thenReturn( this.cassandraContainer.getHost() );
+        when( config.getCassandraPort() ).thenReturn(
+                        this.cassandraContainer.getMappedPort( CassandraContainer.CQL_PORT ) );
+        when( config.getCassandraUser() ).thenReturn( "cassandra" );
+        when( config.getCassandraPass() ).thenReturn( "cassandra" );
+        when( config.getKeyspace() ).thenReturn( "folo" );
+        when( config.getKeyspaceReplicas() ).thenReturn( 1 );
+        when( config.isEnabled() ).thenReturn( true );
+    }
+
+    @AfterEach
+    public void stop()
+    {
+        if ( this.cassandraContainer != null && this.cassandraContainer.isRunning() )
+        {
+            this.cassandraContainer.stop();
+        }
+    }
+
+    @Test
+    public void testIndexAfterSeal()
+                    throws Exception
+    {
+        TrackingKey trackingKey = new TrackingKey( "index-after-seal" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        trackingQuery.recordArtifact(
+                        new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                 "/path", StoreEffect.DOWNLOAD, 10L, "md5", "sha1", "sha256" ) );
+        trackingQuery.seal( trackingKey );
+
+        // a write of another instance which passed the sealed check before the seal, and indexes the key after it
+        trackingQuery.indexInProgress( trackingKey ).toCompletableFuture().join();
+
+        assertFalse( trackingQuery.getInProgressTrackingKey().contains( trackingKey ) );
+        assertTrue( trackingQuery.getSealedTrackingKey().contains( trackingKey ) );
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery.excessTimestamps;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery.keptTimestamps;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery.utf8Length;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CassandraTrackingQueryTest
+{
+    @Test
+    public void testTimestampsCapped()
+    {
+        Set<Long> timestamps = Set.of( 5000L, 1000L, 4000L, 2000L, 3000L );
+
+        assertEquals( Set.of( 2000L, 3000L ), excessTimestamps( timestamps, 3 ) );
+        assertEquals( Set.of( 1000L, 4000L, 5000L ), keptTimestamps( timestamps, 3 ) );
+        assertEquals( Set.of( 1000L ), keptTimestamps( timestamps, 1 ) );
+        assertEquals( timestamps, keptTimestamps( timestamps, 5 ) );
+        assertEquals( timestamps, keptTimestamps( timestamps, 0 ) );
+        assertEquals( Collections.emptySet(), excessTimestamps( null, 3 ) );
+    }
+
+    @Test
+    public void testUtf8Length()
+    {
+        for ( String value : new String[] { "", "/org/foo/1.0/foo-1.0.jar", "/p\u00e4th/\u00fcn\u00efc\u00f6d\u00e9",
+                        "/\u8def\u5f84/\u6587\u4ef6.jar", "/emoji/\uD83D\uDCE6.tgz" } )
+        {
+            assertEquals( value.getBytes( StandardCharsets.UTF_8 ).length, utf8Length( value ) );
+        }
+        assertEquals( 0, utf8Length( null ) );
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO;
+import static org.jboss.pnc.service.tracking.data.cassandra.CassandraFoloUtil.TABLE_FOLO_SEALED;
+
+/**
+ * Ingest writes per second against a running Cassandra (-Dcassandra.host, default localhost), for the statements of
+ * one tracked access: the read of the record row before the write of the original service, the sealed marker check
+ * before the append of CassandraTrackingQuery, and the append alone as the floor. Run the main of this class from the
+ * test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 10 )
+@Threads( 16 )
+@Fork( 1 )
+public class IngestPathBenchmark
+{
+    private static final String KEYSPACE = "folo_bench";
+
+    private static final int TRACKING_KEYS = 100;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private Cluster cluster;
+
+    private Session session;
+
+    private PreparedStatement getRecord;
+
+    private PreparedStatement insertRecord;
+
+    private PreparedStatement getSealedMarker;
+
+    private PreparedStatement appendRecord;
+
+    @Setup
+    public void setup()
+    {
+        cluster = Cluster.builder()
+                         .withoutJMXReporting()
+                         .addContactPoint( System.getProperty( "cassandra.host", "localhost" ) )
+                         .build();
+        session = cluster.connect();
+        session.execute( SchemaUtils.getSchemaCreateKeyspace( KEYSPACE, 1 ) );
+        session.execute( CassandraFoloUtil.getSchemaCreateTableFolo( KEYSPACE ) );
+        session.execute( CassandraFoloUtil.getSchemaCreateTableFoloSealed( KEYSPACE ) );
+
+        getRecord = session.prepare( "SELECT * FROM " + KEYSPACE + "." + TABLE_FOLO
+                                                     + " WHERE tracking_key=? AND store_key=? AND path=?"
+                                                     + " AND store_effect=?;" );
+        insertRecord = session.prepare( "INSERT INTO " + KEYSPACE + "." + TABLE_FOLO
+                                                        + " (tracking_key, sealed, store_key, path, store_effect,"
+                                                        + " size, timestamps) VALUES (?, ?, ?, ?, ?, ?, ?);" );
+        getSealedMarker = session.prepare(
+                        "SELECT sealed_time FROM " + KEYSPACE + "." + TABLE_FOLO_SEALED + " WHERE tracking_key=?;" );
+        appendRecord = session.prepare( "UPDATE " + KEYSPACE + "." + TABLE_FOLO
+                                                        + " SET sealed=?, size=?, timestamps = timestamps + ?"
+                                                        + " WHERE tracking_key=? AND store_key=? AND path=?"
+                                                        + " AND store_effect=?;" );
+        for ( PreparedStatement statement : new PreparedStatement[] { getRecord, insertRecord, getSealedMarker,
+                        appendRecord } )
+        {
+            statement.setConsistencyLevel( ConsistencyLevel.QUORUM );
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        cluster.close();
+    }
+
+    @Benchmark
+    public void readRowBeforeInsert( Blackhole blackhole )
+    {
+        long i = sequence.incrementAndGet();
+        String trackingKey = "build-" + ( i % TRACKING_KEYS );
+        String path = "/org/test/" + i + ".jar";
+        blackhole.consume( session.execute( getRecord.bind( trackingKey, "maven:remote:central", path, "DOWNLOAD" ) )
+                                  .one() );
+        session.execute( insertRecord.bind( trackingKey, false, "maven:remote:central", path, "DOWNLOAD", 10L,
+                                            Set.of( i ) ) );
+    }
+
+    @Benchmark
+    public void checkMarkerBeforeAppend( Blackhole blackhole )
+    {
+        long i = sequence.incrementAndGet();
+        String trackingKey = "build-" + ( i % TRACKING_KEYS );
+        blackhole.consume( session.execute( getSealedMarker.bind( trackingKey ) ).one() );
+        session.execute( appendRecord.bind( false, 10L, Set.of( i ), trackingKey, "maven:remote:central",
+                                            "/org/test/" + i + ".jar", "DOWNLOAD" ) );
+    }
+
+    @Benchmark
+    public void appendOnly()
+    {
+        long i = sequence.incrementAndGet();
+        String trackingKey = "build-" + ( i % TRACKING_KEYS );
+        session.execute( appendRecord.bind( false, 10L, Set.of( i ), trackingKey, "maven:remote:central",
+                                            "/org/test/" + i + ".jar", "DOWNLOAD" ) );
+    }
+
+    public static void main( String[] args ) throws Exception
+    {
+        new Runner( new OptionsBuilder().include( IngestPathBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PartitionBatchWriterTest
+{
+    private final List<CompletableFuture<ResultSet>> executions = new ArrayList<>();
+
+    private final List<BatchStatement> batches = new ArrayList<>();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void testBatchPerPartitionCapped()
+    {
+        PartitionBatchWriter writer = createWriter( 50, 100000, 8 );
+        List<String> rows = new ArrayList<>();
+        for ( int i = 0; i < 70; i++ )
+        {
+            rows.add( "a" );
+        }
+        for ( int i = 0; i < 50; i++ )
+        {
+            rows.add( "b" );
+        }
+
+        CompletionStage<Void> done = writer.write( rows, row -> row, SimpleStatement::new, row -> 10 );
+        executions.forEach( e -> e.complete( null ) );
+
+        assertTrue( done.toCompletableFuture().isDone() );
+        assertEquals( 3, batches.size() );
+        assertEquals( 50, batches.get( 0 ).size() );
+        assertEquals( 20, batches.get( 1 ).size() );
+        assertEquals( 50, batches.get( 2 ).size() );
+        assertEquals( ConsistencyLevel.QUORUM, batches.get( 0 ).getConsistencyLevel() );
+        assertEquals( 3, registry.get( "tracking.cassandra.batch.statements" ).summary().count() );
+        assertEquals( 3, registry.get( "tracking.cassandra.batch.latency" )
+                                 .tag( "outcome", "success" )
+                                 .timer()
+                                 .count() );
+    }
+
+    @Test
+    public void testBatchSizeCapped()
+    {
+        PartitionBatchWriter writer = createWriter( 50, 100, 8 );
+        List<String> rows = List.of( "a", "a", "a", "a", "a" );
+
+        writer.write( rows, row -> row, SimpleStatement::new, row -> 40 );
+
+        assertEquals( 3, batches.size() );
+        assertEquals( 2, batches.get( 0 ).size() );
+        assertEquals( 1, batches.get( 2 ).size() );
+    }
+
+    @Test
+    public void testBatchUsesStatementConsistency()
+    {
+        PartitionBatchWriter writer = createWriter( 50, 100000, 8 );
+
+        writer.write( List.of( "a", "a" ), row -> row,
+                      row -> new SimpleStatement( row ).setConsistencyLevel( ConsistencyLevel.LOCAL_ONE ),
+                      row -> 1 );
+
+        assertEquals( 1, batches.size() );
+        assertEquals( ConsistencyLevel.LOCAL_ONE, batches.get( 0 ).getConsistencyLevel() );
+    }
+
+    @Test
+    public void testInFlightBounded()
+    {
+        PartitionBatchWriter writer = createWriter( 1, 100000, 2 );
+
+        CompletionStage<Void> done =
+                        writer.write( List.of( "a", "a", "a", "a", "a" ), row -> row, SimpleStatement::new, row -> 1 );
+        assertEquals( 2, executions.size() );
+
+        executions.get( 0 ).complete( null );
+        assertEquals( 3, executions.size() );
+
+        for ( int i = 1; i < 5; i++ )
+        {
+            executions.get( i ).complete( null );
+        }
+        assertEquals( 5, executions.size() );
+        assertTrue( done.toCompletableFuture().isDone() );
+    }
+
+    @Test
+    public void testFailureStopsPendingBatches()
+    {
+        PartitionBatchWriter writer = createWriter( 1, 100000, 1 );
+
+        CompletionStage<Void> done =
+                        writer.write( List.of( "a", "a", "a" ), row -> row, SimpleStatement::new, row -> 1 );
+        executions.get( 0 ).completeExceptionally( new IllegalStateException( "test" ) );
+
+        assertEquals( 1, executions.size() );
+        assertTrue( done.toCompletableFuture().isCompletedExceptionally() );
+        assertThrows( CompletionException.class, () -> done.toCompletableFuture().join() );
+        assertEquals( 1, registry.get( "tracking.cassandra.batch.latency" )
+                                 .tag( "outcome", "failure" )
+                                 .timer()
+                                 .count() );
+    }
+
+    private PartitionBatchWriter createWriter( int maxStatements, int maxBytes, int maxInFlight )
+    {
+        CassandraConfiguration config = new CassandraConfiguration();
+        config.setBatchMaxStatements( maxStatements );
+        config.setBatchMaxBytes( maxBytes );
+        config.setBatchMaxInFlight( maxInFlight );
+        return new PartitionBatchWriter( this::execute, ConsistencyLevel.QUORUM, config, registry );
+    }
+
+    private CompletionStage<ResultSet> execute( Statement statement )
+    {
+        batches.add( (BatchStatement) statement );
+        CompletableFuture<ResultSet> execution = new CompletableFuture<>();
+        executions.add( execution );
+        return execution;
+    }
+}
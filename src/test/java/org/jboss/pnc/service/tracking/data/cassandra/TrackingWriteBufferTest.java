@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.data.cassandra;
+
+import org.jboss.pnc.service.tracking.config.IndyTrackingConfiguration;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TrackingWriteBufferTest
+{
+    private static final StoreKey STORE_KEY = new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" );
+
+    private final TrackingKey key = new TrackingKey( "build-1" );
+
+    private final CompletableFuture<Void> write = new CompletableFuture<>();
+
+    private TrackingWriteBuffer buffer;
+
+    @BeforeEach
+    public void setUp()
+    {
+        buffer = new TrackingWriteBuffer();
+        buffer.config = mock( IndyTrackingConfiguration.class );
+        when( buffer.config.writeBufferMaxEntries() ).thenReturn( 3 );
+        buffer.recordManager = mock( CassandraTrackingQuery.class );
+        when( buffer.recordManager.recordArtifactsAsync( any(), any() ) ).thenReturn( write );
+    }
+
+    @Test
+    public void testMergeUntilFlushed()
+    {
+        TrackedContentEntry first = entry( key, "/a.jar" );
+        TrackedContentEntry second = entry( key, "/a.jar" );
+        second.getTimestamps().add( 1L );
+
+        CompletionStage<Void> added1 = buffer.add( key, List.of( first ) );
+        CompletionStage<Void> added2 = buffer.add( key, List.of( second ) );
+        verify( buffer.recordManager, never() ).recordArtifactsAsync( any(), any() );
+
+        buffer.flushAll();
+        ArgumentCaptor<List<TrackedContentEntry>> written = ArgumentCaptor.forClass( List.class );
+        verify( buffer.recordManager ).recordArtifactsAsync( eq( key ), written.capture() );
+        assertEquals( 1, written.getValue().size() );
+        assertTrue( written.getValue().get( 0 ).getTimestamps().contains( 1L ) );
+
+        // not acked before the write is done
+        assertFalse( added1.toCompletableFuture().isDone() );
+        write.complete( null );
+        assertTrue( added1.toCompletableFuture().isDone() );
+        assertTrue( added2.toCompletableFuture().isDone() );
+    }
+
+    @Test
+    public void testFlushWhenFull()
+    {
+        buffer.add( key, List.of( entry( key, "/a.jar" ), entry( key, "/b.jar" ) ) );
+        verify( buffer.recordManager, never() ).recordArtifactsAsync( any(), any() );
+
+        buffer.add( key, List.of( entry( key, "/c.jar" ) ) );
+        verify( buffer.recordManager, times( 1 ) ).recordArtifactsAsync( eq( key ), any() );
+    }
+
+    @Test
+    public void testFlushOneKey()
+    {
+        TrackingKey other = new TrackingKey( "build-2" );
+        buffer.add( key, List.of( entry( key, "/a.jar" ) ) );
+        buffer.add( other, List.of( entry( other, "/a.jar" ) ) );
+
+        CompletionStage<Void> flushed = buffer.flush( key );
+
+        verify( buffer.recordManager ).recordArtifactsAsync( eq( key ), any() );
+        verify( buffer.recordManager, never() ).recordArtifactsAsync( eq( other ), any() );
+        assertFalse( flushed.toCompletableFuture().isDone() );
+        write.complete( null );
+        assertTrue( flushed.toCompletableFuture().isDone() );
+    }
+
+    @Test
+    public void testFailedWriteReported()
+    {
+        CompletionStage<Void> added = buffer.add( key, List.of( entry( key, "/a.jar" ) ) );
+        buffer.flushAll();
+        write.completeExceptionally( new IllegalStateException( "test" ) );
+
+        assertTrue( added.toCompletableFuture().isCompletedExceptionally() );
+    }
+
+    @Test
+    public void testFailedFlushRetried()
+    {
+        when( buffer.config.kafkaWriteRetries() ).thenReturn( 2 );
+        when( buffer.recordManager.recordArtifactsAsync( any(), any() ) ).thenReturn(
+                        CompletableFuture.failedFuture( new IllegalStateException( "test" ) ) ).thenReturn( write );
+        CompletionStage<Void> added = buffer.add( key, List.of( entry( key, "/a.jar" ) ) );
+
+        buffer.flushAll();
+        verify( buffer.recordManager, times( 2 ) ).recordArtifactsAsync( eq( key ), any() );
+        assertFalse( added.toCompletableFuture().isDone() );
+
+        write.complete( null );
+        assertTrue( added.toCompletableFuture().isDone() );
+        assertFalse( added.toCompletableFuture().isCompletedExceptionally() );
+    }
+
+    private static TrackedContentEntry entry( TrackingKey key, String path )
+    {
+        return new TrackedContentEntry( key, STORE_KEY, AccessChannel.NATIVE, "http://test" + path, path,
+                                        StoreEffect.DOWNLOAD, 10L, "md5", "sha1", "sha256" );
+    }
+}
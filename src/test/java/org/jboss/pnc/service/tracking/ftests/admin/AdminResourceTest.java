@@ -49,7 +49,13 @@ import java.util.HashSet;
 import java.util.Set;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.jboss.pnc.service.tracking.profile.CassandraFunctionProfile.CASSANDRA_CONTAINER_IMAGE;
 import static org.mockito.Mockito.when;
 
@@ -223,21 +229,60 @@ public class AdminResourceTest
     @Test
     public void testGetRecordIdsSuccess()
     {
-        // Set up mock response from adminController
-        String expected_string1 = "{\n"
-                        + "  \"sealed\" : [ \"abc123\", \"abc124\", \"abc125\", \"abc126\", \"abc127\", \"tracking-id\", \"abc128\" ]\n"
-                        + "}";
         String expected_string2 = "{\n"
                         + "  \"sealed\" : [ \"abc123\", \"abc124\", \"abc125\", \"abc126\", \"abc127\", \"tracking-id\", \"abc128\" ]\n"
                         + "}";
 
-        // Call getRecordIds() function
-        given().when().get( BASE_URL + "report/ids/sealed" ).then().statusCode( 200 ).body( is( expected_string1 ) );
+        // only the records sealed by the init script are listed as sealed
+        given().when()
+               .get( BASE_URL + "report/ids/sealed" )
+               .then()
+               .statusCode( 200 )
+               .body( "sealed", hasItems( "abc124", "abc127", "abc128" ) )
+               .body( "sealed", not( hasItem( "abc123" ) ) )
+               .body( "inProgress", nullValue() );
+
+        given().when()
+               .get( BASE_URL + "report/ids/in_progress" )
+               .then()
+               .statusCode( 200 )
+               .body( "inProgress", hasItems( "abc123", "abc126" ) )
+               .body( "inProgress", not( hasItem( "abc124" ) ) );
 
         given().when().get( BASE_URL + "report/ids/legacy" ).then().statusCode( 200 ).body( is( expected_string2 ) );
 
     }
 
+    @Test
+    public void testGetRecordIdsPaged()
+    {
+        String token = given().when()
+                              .get( BASE_URL + "report/ids/sealed?limit=2" )
+                              .then()
+                              .statusCode( 200 )
+                              .body( "sealed.size()", is( 2 ) )
+                              .body( "nextPageToken", notNullValue() )
+                              .extract()
+                              .path( "nextPageToken" );
+
+        given().when()
+               .get( BASE_URL + "report/ids/sealed?limit=2&pageToken=" + token )
+               .then()
+               .statusCode( 200 )
+               .body( "sealed", not( empty() ) );
+
+        given().when()
+               .get( BASE_URL + "report/ids/sealed?until=0" )
+               .then()
+               .statusCode( 200 )
+               .body( "sealed", nullValue() )
+               .body( "nextPageToken", nullValue() );
+
+        given().when().get( BASE_URL + "report/ids/sealed?limit=0" ).then().statusCode( 400 );
+        given().when().get( BASE_URL + "report/ids/sealed?pageToken=invalid" ).then().statusCode( 400 );
+        given().when().get( BASE_URL + "report/ids/legacy?limit=2" ).then().statusCode( 400 );
+    }
+
     @Test
     public void testExportReportSuccess() throws IndyWorkflowException, IOException
     {
@@ -245,6 +290,14 @@ public class AdminResourceTest
         given().when().get( BASE_URL + "report/export" ).then().statusCode( 200 );
     }
 
+    @Test
+    public void testExportReportResume()
+    {
+        given().when().get( BASE_URL + "report/export?resumeAfter=abc124" ).then().statusCode( 200 );
+        // abc123 is in progress, so no export can stop after it
+        given().when().get( BASE_URL + "report/export?resumeAfter=abc123" ).then().statusCode( 400 );
+    }
+
     @Test
     public void testImportReportSuccess()
     {
@@ -45,7 +45,9 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import jakarta.enterprise.inject.Any;
 import jakarta.inject.Inject;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static java.lang.Thread.sleep;
@@ -105,7 +107,7 @@ public class TrackingListenerTest
     @Test
     void TestHandleFileAccessEvent() throws InterruptedException
     {
-        InMemorySource<FileEvent> fileEvents = connector.source( "file-event-in" );
+        InMemorySource<List<FileEvent>> fileEvents = connector.source( "file-event-in" );
         FileEvent event = new FileEvent( FileEventType.ACCESS );
         EventMetadata metadata = new EventMetadata();
         metadata.set( Constants.ACCESS_CHANNEL, AccessChannel.GENERIC_PROXY.toString() );
@@ -121,7 +123,7 @@ public class TrackingListenerTest
         event.setSha1( "sha112345" );
         event.setChecksum( "sha256123" );
         event.setSourcePath( "/path/to/sourcefile" );
-        fileEvents.send( event );
+        fileEvents.send( Collections.singletonList( event ) );
         sleep( 10000 );
         TrackedContent content = trackingQuery.get( new TrackingKey( trackingId ) );
         assert content != null;
@@ -130,7 +132,7 @@ public class TrackingListenerTest
     @Test
     void TestHandleFileStorageEvent() throws InterruptedException
     {
-        InMemorySource<FileEvent> fileEvents = connector.source( "file-event-in" );
+        InMemorySource<List<FileEvent>> fileEvents = connector.source( "file-event-in" );
         FileEvent event = new FileEvent( FileEventType.STORAGE );
         event.setOperation( TransferOperation.UPLOAD );
         EventMetadata metadata = new EventMetadata();
@@ -147,7 +149,7 @@ public class TrackingListenerTest
         event.setSha1( "sha112345" );
         event.setChecksum( "sha256123" );
         event.setSourcePath( "/path/to/sourcefile" );
-        fileEvents.send( event );
+        fileEvents.send( Collections.singletonList( event ) );
         sleep( 10000 );
         TrackedContent content = trackingQuery.get( new TrackingKey( trackingId ) );
         assert content != null;
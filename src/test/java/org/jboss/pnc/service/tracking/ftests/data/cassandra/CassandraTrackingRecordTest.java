@@ -15,14 +15,20 @@
  */
 package org.jboss.pnc.service.tracking.ftests.data.cassandra;
 
+import com.google.common.collect.Iterators;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
 
 import org.jboss.pnc.service.tracking.data.cassandra.CassandraConfiguration;
 import org.jboss.pnc.service.tracking.data.cassandra.CassandraTrackingQuery;
 import org.jboss.pnc.service.tracking.data.cassandra.DtxTrackingRecord;
+import org.jboss.pnc.service.tracking.exception.ContentException;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
 import org.jboss.pnc.service.tracking.model.StoreKey;
 import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContent;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
 import org.jboss.pnc.service.tracking.model.TrackingKey;
 import org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants;
 import org.junit.jupiter.api.AfterEach;
@@ -33,10 +39,18 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import jakarta.inject.Inject;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.jboss.pnc.service.tracking.profile.CassandraFunctionProfile.CASSANDRA_CONTAINER_IMAGE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 @QuarkusTest
@@ -84,6 +98,149 @@ public class CassandraTrackingRecordTest
 
     }
 
+    @Test
+    public void testRecordAfterSealRejected()
+                    throws Exception
+    {
+        TrackingKey trackingKey = new TrackingKey( "seal-test" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        TrackedContentEntry entry =
+                        new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                 "/path", StoreEffect.DOWNLOAD, 10L, "md5", "sha1", "sha256" );
+
+        assertFalse( trackingQuery.hasRecord( trackingKey ) );
+        trackingQuery.recordArtifact( entry );
+        assertTrue( trackingQuery.hasRecord( trackingKey ) );
+        assertFalse( trackingQuery.isSealed( trackingKey ) );
+        assertTrue( trackingQuery.getInProgressTrackingKey().contains( trackingKey ) );
+
+        TrackedContent sealed = trackingQuery.seal( trackingKey );
+        assertTrue( trackingQuery.isSealed( trackingKey ) );
+        TrackedContent cached = trackingQuery.get( trackingKey );
+        assertEquals( sealed, cached );
+        assertEquals( sealed.getDownloads(), cached.getDownloads() );
+        assertThrows( UnsupportedOperationException.class, () -> cached.getDownloads().clear() );
+        assertTrue( trackingQuery.getSealedTrackingKey().contains( trackingKey ) );
+        assertFalse( trackingQuery.getInProgressTrackingKey().contains( trackingKey ) );
+        assertThrows( ContentException.class, () -> trackingQuery.recordArtifact( entry ) );
+
+        trackingQuery.delete( trackingKey );
+        assertFalse( trackingQuery.isSealed( trackingKey ) );
+        assertFalse( trackingQuery.hasRecord( trackingKey ) );
+        assertFalse( trackingQuery.getSealedTrackingKey().contains( trackingKey ) );
+    }
+
+    @Test
+    public void testRecordArtifactsAsync()
+    {
+        TrackingKey trackingKey = new TrackingKey( "async-test" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        List<TrackedContentEntry> entries = new ArrayList<>();
+        for ( int i = 0; i < 120; i++ )
+        {
+            entries.add( new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                  "/path/" + i, StoreEffect.DOWNLOAD, 10L, "md5", "sha1",
+                                                  "sha256" ) );
+        }
+
+        trackingQuery.recordArtifactsAsync( trackingKey, entries ).toCompletableFuture().join();
+
+        assertEquals( 120, trackingQuery.get( trackingKey ).getDownloads().size() );
+        assertFalse( trackingQuery.iterateEntries( trackingKey, StoreEffect.UPLOAD ).hasNext() );
+        int downloads = 0;
+        for ( Iterator<TrackedContentEntry> it = trackingQuery.iterateEntries( trackingKey, StoreEffect.DOWNLOAD );
+              it.hasNext(); it.next() )
+        {
+            downloads++;
+        }
+        assertEquals( 120, downloads );
+
+        Map<StoreEffect, Iterator<TrackedContentEntry>> byEffect = trackingQuery.iterateEntriesByEffect( trackingKey );
+        assertFalse( byEffect.get( StoreEffect.UPLOAD ).hasNext() );
+        assertEquals( 120, Iterators.size( byEffect.get( StoreEffect.DOWNLOAD ) ) );
+        assertEquals( 120, Iterators.size( trackingQuery.iterateEntries( trackingKey ) ) );
+    }
+
+    @Test
+    public void testRecordArtifactAppendsTimestamps()
+                    throws Exception
+    {
+        TrackingKey trackingKey = new TrackingKey( "append-test" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        TrackedContentEntry entry =
+                        new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                 "/path", StoreEffect.DOWNLOAD, 10L, "md5", "sha1", "sha256" );
+
+        entry.setTimestamps( new HashSet<>( Set.of( 1000L ) ) );
+        trackingQuery.recordArtifact( entry );
+        entry.setTimestamps( new HashSet<>( Set.of( 2000L ) ) );
+        trackingQuery.recordArtifact( entry );
+
+        Set<TrackedContentEntry> downloads = trackingQuery.get( trackingKey ).getDownloads();
+        assertEquals( 1, downloads.size() );
+        assertEquals( Set.of( 1000L, 2000L ), downloads.iterator().next().getTimestamps() );
+        trackingQuery.delete( trackingKey );
+    }
+
+    @Test
+    public void testSealTrimsTimestamps()
+                    throws Exception
+    {
+        when( config.getTimestampsMax() ).thenReturn( 3 );
+        TrackingKey trackingKey = new TrackingKey( "trim-test" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        TrackedContentEntry entry =
+                        new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                 "/path", StoreEffect.DOWNLOAD, 10L, "md5", "sha1", "sha256" );
+        for ( long timestamp = 1000L; timestamp <= 5000L; timestamp += 1000L )
+        {
+            entry.setTimestamps( new HashSet<>( Set.of( timestamp ) ) );
+            trackingQuery.recordArtifact( entry );
+        }
+
+        TrackedContent sealed = trackingQuery.seal( trackingKey );
+        assertEquals( Set.of( 1000L, 4000L, 5000L ), sealed.getDownloads().iterator().next().getTimestamps() );
+        trackingQuery.delete( trackingKey );
+    }
+
+    @Test
+    public void testPromotionIndex()
+    {
+        TrackingKey trackingKey = new TrackingKey( "promote-test" );
+        StoreKey source = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.hosted, "build-1" );
+        StoreKey target = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.hosted, "pnc-builds" );
+
+        assertFalse( trackingQuery.isPromotedTo( trackingKey, target ) );
+        trackingQuery.recordPromotionAsync( trackingKey, "uuid-1", source, target, Set.of( "/a/b/c" ) )
+                     .toCompletableFuture()
+                     .join();
+
+        assertTrue( trackingQuery.isPromotedTo( trackingKey, target ) );
+        assertFalse( trackingQuery.isPromotedTo( trackingKey, source ) );
+    }
+
+    @Test
+    public void testAddSealedRecordAsync()
+    {
+        TrackingKey trackingKey = new TrackingKey( "import-test" );
+        StoreKey storeKey = new StoreKey( PackageTypeConstants.PKG_TYPE_MAVEN, StoreType.remote, "test" );
+        Set<TrackedContentEntry> downloads = new HashSet<>();
+        for ( int i = 0; i < 120; i++ )
+        {
+            downloads.add( new TrackedContentEntry( trackingKey, storeKey, AccessChannel.NATIVE, "http://test/path",
+                                                    "/path/" + i, StoreEffect.DOWNLOAD, 10L, "md5", "sha1",
+                                                    "sha256" ) );
+        }
+
+        trackingQuery.addSealedRecordAsync( new TrackedContent( trackingKey, new HashSet<>(), downloads ) )
+                     .toCompletableFuture()
+                     .join();
+
+        assertTrue( trackingQuery.isSealed( trackingKey ) );
+        assertEquals( 120, trackingQuery.get( trackingKey ).getDownloads().size() );
+        trackingQuery.delete( trackingKey );
+    }
+
     private DtxTrackingRecord createTestStore()
     {
         DtxTrackingRecord trackingRecord = new DtxTrackingRecord();
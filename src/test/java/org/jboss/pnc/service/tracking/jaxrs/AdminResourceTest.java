@@ -27,9 +27,11 @@ import org.jboss.pnc.service.tracking.controller.AdminController;
 import org.jboss.pnc.service.tracking.exception.ContentException;
 import org.jboss.pnc.service.tracking.exception.IndyWorkflowException;
 import org.jboss.pnc.service.tracking.jaxrs.ResponseHelper;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
 import org.jboss.pnc.service.tracking.model.StoreKey;
 import org.jboss.pnc.service.tracking.model.StoreType;
 import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.model.dto.ImportResultDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
 import org.jboss.pnc.service.tracking.model.dto.TrackingIdsDTO;
@@ -39,15 +41,24 @@ import org.junit.jupiter.api.Test;
 import jakarta.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -104,6 +115,102 @@ public class AdminResourceTest
         given().when().get( BASE_URL + TRACKING_ID + "/record/zip" ).then().statusCode( 200 ).body( is( "" ) );
     }
 
+    @Test
+    void testGetRecordUploads()
+    {
+        TrackedContentEntryDTO entry = new TrackedContentEntryDTO();
+        entry.setPath( "test" );
+        when( adminController.getRecordEntries( eq( TRACKING_ID ), eq( StoreEffect.UPLOAD ), anyString() ) )
+                        .thenReturn( List.of( entry ).iterator() );
+        when( adminController.getRecordEntries( eq( TRACKING_ID ), eq( StoreEffect.DOWNLOAD ), anyString() ) )
+                        .thenReturn( Collections.emptyIterator() );
+
+        given().when()
+               .get( BASE_URL + TRACKING_ID + "/record/uploads" )
+               .then()
+               .statusCode( 200 )
+               .body( "size()", is( 1 ) )
+               .body( "[0].path", is( "test" ) );
+        given().when()
+               .get( BASE_URL + TRACKING_ID + "/record/downloads" )
+               .then()
+               .statusCode( 200 )
+               .body( "size()", is( 0 ) );
+    }
+
+    @Test
+    void testGetRecordLines() throws IndyWorkflowException
+    {
+        TrackedContentEntryDTO upload = new TrackedContentEntryDTO();
+        upload.setPath( "/upload" );
+        upload.setEffect( StoreEffect.UPLOAD );
+        TrackedContentEntryDTO download = new TrackedContentEntryDTO();
+        download.setPath( "/download" );
+        download.setEffect( StoreEffect.DOWNLOAD );
+        when( adminController.getRecordLines( eq( TRACKING_ID ), anyString() ) ).thenReturn(
+                        List.of( upload, download ).iterator() );
+
+        String body = given().accept( AdminResource.MEDIATYPE_APPLICATION_NDJSON )
+                             .when()
+                             .get( BASE_URL + TRACKING_ID + "/record" )
+                             .then()
+                             .statusCode( 200 )
+                             .contentType( AdminResource.MEDIATYPE_APPLICATION_NDJSON )
+                             .extract()
+                             .asString();
+
+        String[] lines = body.split( "\n" );
+        assertEquals( 2, lines.length );
+        assertTrue( lines[0].contains( "\"path\":\"/upload\"" ) && lines[0].contains( "\"effect\":\"UPLOAD\"" ) );
+        assertTrue( lines[1].contains( "\"path\":\"/download\"" ) );
+        verify( adminController, never() ).getRecord( anyString(), anyString() );
+    }
+
+    @Test
+    void testGetRecordFields() throws IndyWorkflowException
+    {
+        TrackedContentEntryDTO entry = new TrackedContentEntryDTO();
+        entry.setPath( "/a/b/c.jar" );
+        entry.setSha1( "da39a3ee5e6b4b0d3255bfef95601890afd80709" );
+        entry.setMd5( "d41d8cd98f00b204e9800998ecf8427e" );
+        TrackedContentDTO trackedContentDTO =
+                        new TrackedContentDTO( new TrackingKey( TRACKING_ID ), Set.of( entry ), Set.of() );
+        // without localUrl in the fields, the controller is asked to skip the local urls
+        when( adminController.getRecord( eq( TRACKING_ID ), isNull() ) ).thenReturn( trackedContentDTO );
+
+        given().queryParam( "fields", "path,sha1" )
+               .when()
+               .get( BASE_URL + TRACKING_ID + "/record" )
+               .then()
+               .statusCode( 200 )
+               .body( "uploads[0].path", is( "/a/b/c.jar" ) )
+               .body( "uploads[0].sha1", is( entry.getSha1() ) )
+               .body( "uploads[0].md5", nullValue() );
+
+        given().queryParam( "includeLocalUrl", false )
+               .when()
+               .get( BASE_URL + TRACKING_ID + "/record" )
+               .then()
+               .statusCode( 200 )
+               .body( "uploads[0].md5", is( entry.getMd5() ) );
+
+        given().queryParam( "fields", "path,sha512" )
+               .when()
+               .get( BASE_URL + TRACKING_ID + "/record" )
+               .then()
+               .statusCode( 400 );
+    }
+
+    @Test
+    void testHasRecord()
+    {
+        when( adminController.hasRecord( TRACKING_ID ) ).thenReturn( true );
+        given().when().head( BASE_URL + TRACKING_ID + "/record" ).then().statusCode( 200 );
+
+        when( adminController.hasRecord( TRACKING_ID ) ).thenReturn( false );
+        given().when().head( BASE_URL + TRACKING_ID + "/record" ).then().statusCode( 404 );
+    }
+
     @Test
     void testGetRecordReturnsOkResponse() throws IndyWorkflowException
     {
@@ -226,25 +333,56 @@ public class AdminResourceTest
     @Test
     public void testExportReportSuccess() throws IndyWorkflowException, IOException
     {
-        File file = File.createTempFile( "test", ".zip" );
         // Set up mock response from adminController
-        when( adminController.renderReportZip() ).thenReturn( file );
+        when( adminController.renderReportZip( null, null ) ).thenReturn( out -> {
+        } );
         given().when().get( BASE_URL + "report/export" ).then().statusCode( 200 ).body( is( "" ) );
     }
 
+    @Test
+    public void testExportReportResumeNotSealed() throws IndyWorkflowException
+    {
+        when( adminController.renderReportZip( "abc", null ) ).thenThrow(
+                        new IndyWorkflowException( 400, "Tracking record: abc is not sealed" ) );
+        given().when().get( BASE_URL + "report/export?resumeAfter=abc" ).then().statusCode( 400 );
+    }
+
     @Test
     public void testExportReportError() throws IndyWorkflowException
     {
         // Set up mock response from adminController
-        when( adminController.renderReportZip() ).thenThrow( new IndyWorkflowException( "test" ) );
+        when( adminController.renderReportZip( null, null ) ).thenThrow( new IndyWorkflowException( "test" ) );
         given().when().get( BASE_URL + "report/export" ).then().statusCode( 500 );
     }
 
     @Test
     public void testImportReportSuccess() throws IndyWorkflowException
     {
-        doNothing().when( adminController ).importRecordZip( any() );
-        given().when().put( BASE_URL + "report/import" ).then().statusCode( 201 );
+        ImportResultDTO result = new ImportResultDTO( true, 1, 2, 3, 4, 1, Map.of( "abc", "failed" ) );
+        when( adminController.importRecordZip( any() ) ).thenReturn( result );
+        given().when()
+               .put( BASE_URL + "report/import" )
+               .then()
+               .statusCode( 201 )
+               .body( "records", is( 1 ) )
+               .body( "failedRecords", is( 1 ) )
+               .body( "failures.abc", is( "failed" ) );
+    }
+
+    @Test
+    public void testGetImportProgress()
+    {
+        when( adminController.getImportProgress() ).thenReturn( null );
+        given().when().get( BASE_URL + "report/import/progress" ).then().statusCode( 404 );
+
+        when( adminController.getImportProgress() ).thenReturn(
+                        new ImportResultDTO( false, 10, 20, 30, 1000, 0, Map.of() ) );
+        given().when()
+               .get( BASE_URL + "report/import/progress" )
+               .then()
+               .statusCode( 200 )
+               .body( "done", is( false ) )
+               .body( "recordsPerSecond", is( 10.0f ) );
     }
 
     @Test
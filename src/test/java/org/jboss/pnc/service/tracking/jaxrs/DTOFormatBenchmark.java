@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.jaxrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+import org.jboss.pnc.service.tracking.util.jackson.IndyJacksonCustomizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_NPM;
+
+/**
+ * Write/parse cost of a report as smile against json, as sent by /{id}/record. The encoded sizes are printed at setup.
+ * Run the main of this class from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class DTOFormatBenchmark
+{
+    @Param( { "100", "10000" } )
+    int entries;
+
+    private TrackedContentDTO report;
+
+    private ObjectMapper json;
+
+    private ObjectWriter compactJson;
+
+    private ObjectMapper smile;
+
+    private byte[] jsonBytes;
+
+    private byte[] smileBytes;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        json = new ObjectMapper();
+        new IndyJacksonCustomizer().customize( json );
+        compactJson = json.writer().without( SerializationFeature.INDENT_OUTPUT );
+        smile = DTOResponseFilter.smileMapper( json );
+
+        report = createReport( entries );
+        jsonBytes = writeJson();
+        smileBytes = writeSmile();
+        System.out.printf( "%n%d entries: json %d bytes (pretty %d), smile %d bytes%n", entries, jsonBytes.length,
+                           json.writeValueAsBytes( report ).length, smileBytes.length );
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws IOException
+    {
+        return compactJson.writeValueAsBytes( report );
+    }
+
+    @Benchmark
+    public byte[] writeSmile() throws IOException
+    {
+        return smile.writeValueAsBytes( report );
+    }
+
+    @Benchmark
+    public TrackedContentDTO parseJson() throws IOException
+    {
+        return json.readValue( jsonBytes, TrackedContentDTO.class );
+    }
+
+    @Benchmark
+    public TrackedContentDTO parseSmile() throws IOException
+    {
+        return smile.readValue( smileBytes, TrackedContentDTO.class );
+    }
+
+    static TrackedContentDTO createReport( int size )
+    {
+        StoreKey[] storeKeys = { new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" ),
+                        new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds-untested" ),
+                        new StoreKey( PKG_TYPE_NPM, StoreType.remote, "npmjs" ) };
+        Set<TrackedContentEntryDTO> uploads = new TreeSet<>();
+        Set<TrackedContentEntryDTO> downloads = new TreeSet<>();
+        for ( int i = 0; i < size; i++ )
+        {
+            StoreKey storeKey = storeKeys[i % storeKeys.length];
+            String path = "/org/commonjava/indy/indy-core/1." + ( i / 10 ) + "/indy-core-1." + ( i / 10 ) + "-"
+                            + i + ".jar";
+            TrackedContentEntryDTO entry = new TrackedContentEntryDTO( storeKey, AccessChannel.NATIVE, path );
+            entry.setOriginUrl( "http://repo.example.com/maven2" + path );
+            entry.setLocalUrl( "http://indy.example.com/api/content/maven/" + storeKey.getType().singularEndpointName()
+                                               + "/" + storeKey.getName() + path );
+            entry.setSize( 1000L + i );
+            entry.setMd5( String.format( "%032x", i ) );
+            entry.setSha1( String.format( "%040x", i ) );
+            entry.setSha256( String.format( "%064x", i ) );
+            ( i % 5 == 0 ? uploads : downloads ).add( entry );
+        }
+        return new TrackedContentDTO( new TrackingKey( "benchmark" ), uploads, downloads );
+    }
+
+    public static void main( String[] args ) throws Exception
+    {
+        new Runner( new OptionsBuilder().include( DTOFormatBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.jaxrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.opentelemetry.api.OpenTelemetry;
+import org.jboss.pnc.service.tracking.data.metrics.TraceManager;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackingIdsDTO;
+import org.jboss.pnc.service.tracking.util.jackson.IndyJacksonCustomizer;
+import org.junit.jupiter.api.Test;
+
+import jakarta.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.jboss.pnc.service.tracking.jaxrs.DTOResponseFilter.isPretty;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOResponseFilter.isPreferredOverJson;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOResponseFilter.smileMapper;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOResponseFilter.negotiateEncoding;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOStreamingOutput.BROTLI;
+import static org.jboss.pnc.service.tracking.jaxrs.DTOStreamingOutput.GZIP;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DTOResponseFilterTest
+{
+    @Test
+    public void testNegotiateEncoding()
+    {
+        assertNull( negotiateEncoding( null, true ) );
+        assertNull( negotiateEncoding( "identity", true ) );
+        assertEquals( GZIP, negotiateEncoding( "gzip, deflate", true ) );
+        assertEquals( BROTLI, negotiateEncoding( "gzip, deflate, br", true ) );
+        assertEquals( GZIP, negotiateEncoding( "gzip, deflate, br", false ) );
+        assertEquals( GZIP, negotiateEncoding( "br;q=0, gzip;q=0.5", true ) );
+        assertEquals( GZIP, negotiateEncoding( "*", true ) );
+        assertNull( negotiateEncoding( "gzip;q=0, *", true ) );
+    }
+
+    @Test
+    public void testIsPretty()
+    {
+        List<MediaType> compact = List.of( new MediaType( "application", "json", Map.of( "pretty", "false" ) ) );
+        assertTrue( isPretty( null, List.of( MediaType.APPLICATION_JSON_TYPE ), true ) );
+        assertFalse( isPretty( null, List.of( MediaType.APPLICATION_JSON_TYPE ), false ) );
+        assertFalse( isPretty( null, compact, true ) );
+        assertTrue( isPretty( "true", compact, false ) );
+        assertFalse( isPretty( "false", null, true ) );
+    }
+
+    @Test
+    public void testWriteCompactGzip() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper().enable( SerializationFeature.INDENT_OUTPUT );
+        TraceManager traceManager = new TraceManager( OpenTelemetry.noop().getTracer( "test" ) );
+        TrackingIdsDTO dto = new TrackingIdsDTO();
+        dto.setSealed( Set.of( "build-1" ) );
+
+        DTOStreamingOutput output = new DTOStreamingOutput( mapper, dto, traceManager );
+        ByteArrayOutputStream pretty = new ByteArrayOutputStream();
+        output.write( pretty );
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        output.withFormat( false, GZIP ).write( compressed );
+        String compact = new String(
+                        new GZIPInputStream( new ByteArrayInputStream( compressed.toByteArray() ) ).readAllBytes() );
+
+        assertEquals( mapper.writer().without( SerializationFeature.INDENT_OUTPUT ).writeValueAsString( dto ),
+                      compact );
+        assertTrue( pretty.toString().contains( "\n" ) );
+        assertFalse( compact.contains( "\n" ) );
+    }
+
+    @Test
+    public void testIsPreferredOverJson()
+    {
+        MediaType smile = DTOResponseFilter.SMILE_TYPE;
+        assertFalse( isPreferredOverJson( null, smile ) );
+        assertFalse( isPreferredOverJson( List.of( MediaType.WILDCARD_TYPE ), smile ) );
+        assertFalse( isPreferredOverJson( List.of( MediaType.APPLICATION_JSON_TYPE, smile ), smile ) );
+        assertTrue( isPreferredOverJson( List.of( smile, MediaType.APPLICATION_JSON_TYPE ), smile ) );
+        assertTrue( isPreferredOverJson( List.of( AdminResource.NDJSON_TYPE ), AdminResource.NDJSON_TYPE ) );
+        assertFalse( isPreferredOverJson( List.of( AdminResource.NDJSON_TYPE ), smile ) );
+    }
+
+    @Test
+    public void testWriteSmile() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        new IndyJacksonCustomizer().customize( mapper );
+        ObjectMapper smile = smileMapper( mapper );
+        TraceManager traceManager = new TraceManager( OpenTelemetry.noop().getTracer( "test" ) );
+
+        StoreKey storeKey = new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds" );
+        TrackedContentEntryDTO entry = new TrackedContentEntryDTO( storeKey, AccessChannel.NATIVE, "/a/b/c.jar" );
+        entry.setSha1( "da39a3ee5e6b4b0d3255bfef95601890afd80709" );
+        TrackedContentDTO dto = new TrackedContentDTO( new TrackingKey( "build-1" ), Set.of( entry ), Set.of() );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DTOStreamingOutput( mapper, dto, traceManager ).withMapper( smile ).write( out );
+        TrackedContentDTO read = smile.readValue( out.toByteArray(), TrackedContentDTO.class );
+
+        assertEquals( dto.getKey(), read.getKey() );
+        assertEquals( dto.getUploads(), read.getUploads() );
+        assertEquals( storeKey, read.getUploads().iterator().next().getStoreKey() );
+        assertTrue( out.size() < mapper.writeValueAsBytes( dto ).length );
+    }
+
+    @Test
+    public void testWriteLines() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper().enable( SerializationFeature.INDENT_OUTPUT );
+        TraceManager traceManager = new TraceManager( OpenTelemetry.noop().getTracer( "test" ) );
+        StoreKey storeKey = new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds" );
+        List<TrackedContentEntryDTO> entries =
+                        List.of( new TrackedContentEntryDTO( storeKey, AccessChannel.NATIVE, "/a" ),
+                                 new TrackedContentEntryDTO( storeKey, AccessChannel.NATIVE, "/b" ) );
+        entries.get( 0 ).setEffect( StoreEffect.UPLOAD );
+        entries.get( 1 ).setEffect( StoreEffect.DOWNLOAD );
+
+        DTOStreamingOutput output = new DTOStreamingOutput( mapper, entries.iterator(), traceManager ).asLines();
+        // logging the output must not pull the entries
+        assertTrue( output.toString().endsWith( ", lines]" ) );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.withFormat( true, null ).write( out );
+
+        String[] lines = out.toString().split( "\n", -1 );
+        assertEquals( 3, lines.length );
+        assertEquals( "", lines[2] );
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            TrackedContentEntryDTO read = mapper.readValue( lines[i], TrackedContentEntryDTO.class );
+            assertEquals( entries.get( i ), read );
+            assertEquals( entries.get( i ).getEffect(), read.getEffect() );
+        }
+
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        new DTOStreamingOutput( mapper, Collections.emptyIterator(), traceManager ).asLines().write( empty );
+        assertEquals( 0, empty.size() );
+    }
+}
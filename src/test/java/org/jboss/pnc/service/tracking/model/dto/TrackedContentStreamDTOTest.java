@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.model.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+
+public class TrackedContentStreamDTOTest
+{
+    @Test
+    public void readableAsTrackedContentDTO() throws IOException
+    {
+        List<TrackedContentEntryDTO> downloads =
+                        Arrays.asList( new TrackedContentEntryDTO( new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "foo" ),
+                                                                   AccessChannel.NATIVE, "/path/to/my.pom" ),
+                                       new TrackedContentEntryDTO( new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "foo2" ),
+                                                                   AccessChannel.NATIVE, "/path/to/another/file.pom" ) );
+
+        TrackedContentStreamDTO in = new TrackedContentStreamDTO( new TrackingKey( "key" ),
+                                                                  Collections.<TrackedContentEntryDTO>emptyIterator(),
+                                                                  downloads.iterator() );
+
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString( in );
+        TrackedContentDTO out = mapper.readValue( json, TrackedContentDTO.class );
+
+        assertThat( out.getKey(), equalTo( new TrackingKey( "key" ) ) );
+        assertThat( out.getUploads() == null || out.getUploads().isEmpty(), equalTo( true ) );
+        assertThat( out.getDownloads(), equalTo( new HashSet<>( downloads ) ) );
+    }
+
+    @Test
+    public void emptyWhenNoEntries()
+    {
+        TrackedContentStreamDTO in = new TrackedContentStreamDTO( new TrackingKey( "key" ),
+                                                                  Collections.<TrackedContentEntryDTO>emptyIterator(),
+                                                                  Collections.<TrackedContentEntryDTO>emptyIterator() );
+
+        assertThat( in.isEmpty(), equalTo( true ) );
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_NPM;
+
+/**
+ * Cost of the local urls of a whole report, built per entry with UrlUtils against the per-store prefixes of
+ * LocalUrlBuilder. Run the main of this class from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LocalUrlBuilderBenchmark
+{
+    private static final String BASE_URL = "http://indy.example.com/api";
+
+    @Param( { "100000" } )
+    int entries;
+
+    private StoreKey[] storeKeys;
+
+    private String[] paths;
+
+    @Setup
+    public void setup()
+    {
+        StoreKey[] stores = { new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" ),
+                        new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds-untested" ),
+                        new StoreKey( PKG_TYPE_NPM, StoreType.remote, "npmjs" ) };
+        storeKeys = new StoreKey[entries];
+        paths = new String[entries];
+        for ( int i = 0; i < entries; i++ )
+        {
+            storeKeys[i] = stores[i % stores.length];
+            paths[i] = "/org/commonjava/indy/indy-core/1." + ( i / 10 ) + "/indy-core-1." + ( i / 10 ) + "-" + i
+                            + ".jar";
+        }
+    }
+
+    @Benchmark
+    public void buildUrl( Blackhole blackhole ) throws MalformedURLException
+    {
+        for ( int i = 0; i < entries; i++ )
+        {
+            StoreKey storeKey = storeKeys[i];
+            blackhole.consume( UrlUtils.buildUrl( BASE_URL, "content", storeKey.getPackageType(),
+                                                  storeKey.getType().singularEndpointName(), storeKey.getName(),
+                                                  paths[i] ) );
+        }
+    }
+
+    @Benchmark
+    public void localUrlBuilder( Blackhole blackhole ) throws MalformedURLException
+    {
+        LocalUrlBuilder builder = new LocalUrlBuilder( BASE_URL );
+        for ( int i = 0; i < entries; i++ )
+        {
+            blackhole.consume( builder.build( storeKeys[i], paths[i] ) );
+        }
+    }
+
+    public static void main( String[] args ) throws Exception
+    {
+        new Runner( new OptionsBuilder().include( LocalUrlBuilderBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.junit.jupiter.api.Test;
+
+import java.net.MalformedURLException;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_NPM;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LocalUrlBuilderTest
+{
+    private static final String[] BASE_URLS =
+                    { "http://localhost:8081/api", "http://localhost:8081/api/", "HTTPS://Indy.Example.com" };
+
+    private static final StoreKey[] STORE_KEYS = { new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds" ),
+                    new StoreKey( PKG_TYPE_MAVEN, StoreType.group, "build-1" ),
+                    new StoreKey( PKG_TYPE_NPM, StoreType.remote, "npmjs" ) };
+
+    private static final String[] PATHS = { "/org/foo/bar/1.0/bar-1.0.jar", "org/foo/bar", "/", "//double/slash",
+                    "/a/./b/../c", "/with space/x", "/x#ref?q=1", "/%40scope%2fpkg", "/\u00fcn\u00efcode",
+                    " /trimmed " };
+
+    @Test
+    public void testSameAsBuildUrl() throws MalformedURLException
+    {
+        for ( String baseUrl : BASE_URLS )
+        {
+            LocalUrlBuilder builder = new LocalUrlBuilder( baseUrl );
+            for ( StoreKey storeKey : STORE_KEYS )
+            {
+                for ( String path : PATHS )
+                {
+                    String expected = UrlUtils.buildUrl( baseUrl, "content", storeKey.getPackageType(),
+                                                         storeKey.getType().singularEndpointName(),
+                                                         storeKey.getName(), path );
+                    assertEquals( expected, builder.build( storeKey, path ), baseUrl + " " + storeKey + " " + path );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedBaseUrl()
+    {
+        LocalUrlBuilder builder = new LocalUrlBuilder( "localhost:8081/api" );
+        assertThrows( MalformedURLException.class, () -> builder.build( STORE_KEYS[0], PATHS[0] ) );
+    }
+}
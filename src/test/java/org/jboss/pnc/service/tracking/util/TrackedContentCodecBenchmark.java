@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.model.TrackedContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of the binary record format against java serialization. The encoded sizes are printed at setup.
+ * Run the main of this class from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class TrackedContentCodecBenchmark
+{
+    @Param( { "100", "10000" } )
+    int entries;
+
+    private TrackedContent record;
+
+    private byte[] binary;
+
+    private byte[] java;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        record = TrackedContentCodecTest.createRecord( "benchmark", entries );
+        binary = encodeBinary();
+        java = encodeJava();
+        System.out.printf( "%n%d entries: binary %d bytes, java %d bytes%n", entries, binary.length, java.length );
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackedContentCodec.encode( record, out );
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeJava() throws IOException
+    {
+        return TrackingUtils.toInputStream( record ).readAllBytes();
+    }
+
+    @Benchmark
+    public TrackedContent decodeBinary() throws IOException
+    {
+        return TrackedContentCodec.decode( new ByteArrayInputStream( binary ) );
+    }
+
+    @Benchmark
+    public TrackedContent decodeJava() throws IOException, ClassNotFoundException
+    {
+        return (TrackedContent) new ObjectInputStream( new ByteArrayInputStream( java ) ).readObject();
+    }
+
+    public static void main( String[] args ) throws Exception
+    {
+        new Runner( new OptionsBuilder().include( TrackedContentCodecBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util;
+
+import org.jboss.pnc.service.tracking.Constants.EXPORT_FORMAT;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackedContent;
+import org.jboss.pnc.service.tracking.model.TrackedContentEntry;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_NPM;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrackedContentCodecTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        TrackedContent record = createRecord( "build-1", 200 );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackedContentCodec.encode( record, out );
+        TrackedContent decoded = TrackedContentCodec.decode( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertEquals( record.getKey(), decoded.getKey() );
+        assertSameEntries( record.getUploads(), decoded.getUploads() );
+        assertSameEntries( record.getDownloads(), decoded.getDownloads() );
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws IOException
+    {
+        TrackedContent record = createRecord( "build-1", 1000 );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackedContentCodec.encode( record, out );
+        int javaSize = TrackingUtils.toInputStream( record ).readAllBytes().length;
+
+        assertTrue( out.size() * 2 < javaSize, "binary: " + out.size() + ", java: " + javaSize );
+    }
+
+    @Test
+    public void testImportBothFormats() throws Exception
+    {
+        List<TrackedContent> records = Arrays.asList( createRecord( "build-1", 10 ), createRecord( "build-2", 20 ) );
+        for ( EXPORT_FORMAT format : EXPORT_FORMAT.values() )
+        {
+            ByteArrayOutputStream zip = new ByteArrayOutputStream();
+            assertEquals( 2, TrackingUtils.zipTrackedContent( zip, records.iterator(), format, null ) );
+
+            Map<TrackingKey, TrackedContent> imported = new HashMap<>();
+            int count = TrackingUtils.readZipInputStreamAnd( new ByteArrayInputStream( zip.toByteArray() ),
+                                                             record -> imported.put( record.getKey(), record ) );
+
+            assertEquals( 2, count );
+            for ( TrackedContent record : records )
+            {
+                assertSameEntries( record.getDownloads(), imported.get( record.getKey() ).getDownloads() );
+            }
+        }
+    }
+
+    @Test
+    public void testImportReportsFailedTrackingId() throws Exception
+    {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream( zip ))
+        {
+            out.putNextEntry( new ZipEntry( "sealed/build-1" ) );
+            out.write( new byte[] { 'F', 'O', 'L', 'O', (byte) ( TrackedContentCodec.VERSION + 1 ) } );
+            out.closeEntry();
+        }
+
+        Map<String, Exception> failures = new HashMap<>();
+        int count = TrackingUtils.readZipInputStreamAnd( new ByteArrayInputStream( zip.toByteArray() ),
+                                                         record -> {
+                                                         }, failures::put );
+
+        assertEquals( 0, count );
+        assertEquals( Set.of( "build-1" ), failures.keySet() );
+    }
+
+    @Test
+    public void testEncodedBytesPinned() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TrackedContentCodec.encode( createPinnedRecord(), out );
+
+        // the store type and the access channel are written by name: "remote" and "NATIVE"
+        assertEquals( "464f4c4f02086275696c642d31000100010772656d6f7465066d6176656e0863656e7472616c01074e41544956"
+                                      + "4500072f612e6a6172010013687474703a2f2f7265706f2f6d6176656e32151403abd00f02a01f"
+                                      + "d00f", toHex( out.toByteArray() ) );
+    }
+
+    @Test
+    public void testDecodeVersionOne() throws Exception
+    {
+        // the pinned record as version 1 wrote it, with the ordinals of the store type and the access channel
+        byte[] v1 = fromHex( "464f4c4f01086275696c642d3100010003066d6176656e0863656e7472616c0200072f612e6a617201001368"
+                                             + "7474703a2f2f7265706f2f6d6176656e32151403abd00f02a01fd00f" );
+
+        TrackedContent expected = createPinnedRecord();
+        TrackedContent decoded = TrackedContentCodec.decode( new ByteArrayInputStream( v1 ) );
+        assertSameEntries( expected.getDownloads(), decoded.getDownloads() );
+        assertTrue( decoded.getUploads().isEmpty() );
+        TrackedContentEntry entry = decoded.getDownloads().iterator().next();
+        assertEquals( StoreType.remote, entry.getStoreKey().getType() );
+        assertEquals( AccessChannel.NATIVE, entry.getAccessChannel() );
+    }
+
+    @Test
+    public void testRejectNewerVersion()
+    {
+        byte[] data = { 'F', 'O', 'L', 'O', (byte) ( TrackedContentCodec.VERSION + 1 ) };
+        assertThrows( IOException.class, () -> TrackedContentCodec.decode( new ByteArrayInputStream( data ) ) );
+    }
+
+    private static TrackedContent createPinnedRecord()
+    {
+        TrackingKey key = new TrackingKey( "build-1" );
+        TrackedContentEntry entry =
+                        new TrackedContentEntry( key, new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" ),
+                                                 AccessChannel.NATIVE, "http://repo/maven2/a.jar", "/a.jar",
+                                                 StoreEffect.DOWNLOAD, 10L, null, "ab", null );
+        entry.setIndex( 1000L );
+        entry.setTimestamps( new HashSet<>( Set.of( 2000L, 3000L ) ) );
+        return new TrackedContent( key, new HashSet<>(), new HashSet<>( Set.of( entry ) ) );
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder hex = new StringBuilder();
+        for ( byte b : bytes )
+        {
+            hex.append( String.format( "%02x", b ) );
+        }
+        return hex.toString();
+    }
+
+    private static byte[] fromHex( String hex )
+    {
+        byte[] bytes = new byte[hex.length() / 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = (byte) Integer.parseInt( hex.substring( i * 2, i * 2 + 2 ), 16 );
+        }
+        return bytes;
+    }
+
+    static TrackedContent createRecord( String id, int size )
+    {
+        TrackingKey key = new TrackingKey( id );
+        StoreKey[] storeKeys = { new StoreKey( PKG_TYPE_MAVEN, StoreType.remote, "central" ),
+                        new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds-untested" ),
+                        new StoreKey( PKG_TYPE_NPM, StoreType.remote, "npmjs" ) };
+        Set<TrackedContentEntry> uploads = new HashSet<>();
+        Set<TrackedContentEntry> downloads = new HashSet<>();
+        for ( int i = 0; i < size; i++ )
+        {
+            StoreKey storeKey = storeKeys[i % storeKeys.length];
+            String path = "/org/commonjava/indy/indy-core/1." + ( i / 10 ) + "/indy-core-1." + ( i / 10 ) + "-"
+                            + i + ".jar";
+            StoreEffect effect = i % 5 == 0 ? StoreEffect.UPLOAD : StoreEffect.DOWNLOAD;
+            String originUrl = i % 7 == 0 ? null : "http://repo.example.com/maven2" + path;
+            String sha256 = i % 11 == 0 ? "n/a" : String.format( "%064x", i );
+            TrackedContentEntry entry =
+                            new TrackedContentEntry( key, storeKey, AccessChannel.NATIVE, originUrl, path, effect,
+                                                     1000L + i, String.format( "%032x", i ),
+                                                     String.format( "%040x", i ), sha256 );
+            entry.getTimestamps().add( 1700000000000L + i );
+            ( effect == StoreEffect.UPLOAD ? uploads : downloads ).add( entry );
+        }
+        return new TrackedContent( key, uploads, downloads );
+    }
+
+    private static void assertSameEntries( Set<TrackedContentEntry> expected, Set<TrackedContentEntry> actual )
+    {
+        assertEquals( expected, actual );
+        Map<TrackedContentEntry, TrackedContentEntry> byEntry = new HashMap<>();
+        actual.forEach( e -> byEntry.put( e, e ) );
+        for ( TrackedContentEntry e : new ArrayList<>( expected ) )
+        {
+            TrackedContentEntry a = byEntry.get( e );
+            assertEquals( e.getOriginUrl(), a.getOriginUrl() );
+            assertEquals( e.getSize(), a.getSize() );
+            assertEquals( e.getMd5(), a.getMd5() );
+            assertEquals( e.getSha1(), a.getSha1() );
+            assertEquals( e.getSha256(), a.getSha256() );
+            assertEquals( e.getIndex(), a.getIndex() );
+            assertEquals( e.getTimestamps(), a.getTimestamps() );
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2022-2023 Red Hat, Inc. (https://github.com/Commonjava/indy-tracking-service)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.pnc.service.tracking.util.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.pnc.service.tracking.model.AccessChannel;
+import org.jboss.pnc.service.tracking.model.StoreEffect;
+import org.jboss.pnc.service.tracking.model.StoreKey;
+import org.jboss.pnc.service.tracking.model.StoreType;
+import org.jboss.pnc.service.tracking.model.TrackingKey;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentDTO;
+import org.jboss.pnc.service.tracking.model.dto.TrackedContentEntryDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.jboss.pnc.service.tracking.model.pkg.PackageTypeConstants.PKG_TYPE_MAVEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntryFieldsTest
+{
+    @Test
+    public void testParse()
+    {
+        assertNull( EntryFields.parse( null ) );
+        assertNull( EntryFields.parse( " " ) );
+        assertEquals( Set.of( "path", "sha1" ), EntryFields.parse( "path, sha1," ) );
+        assertThrows( IllegalArgumentException.class, () -> EntryFields.parse( "path,sha512" ) );
+
+        assertTrue( EntryFields.includesLocalUrl( null ) );
+        assertTrue( EntryFields.includesLocalUrl( Set.of( "path", EntryFields.LOCAL_URL ) ) );
+        assertFalse( EntryFields.includesLocalUrl( Set.of( "path" ) ) );
+    }
+
+    @Test
+    public void testNamesAreTheEntryProperties() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode json = mapper.readTree( mapper.writeValueAsString( createEntry() ) );
+
+        Set<String> properties = new HashSet<>();
+        json.fieldNames().forEachRemaining( properties::add );
+        assertEquals( EntryFields.NAMES, properties );
+    }
+
+    @Test
+    public void testWriter() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        TrackedContentDTO dto =
+                        new TrackedContentDTO( new TrackingKey( "build-1" ), Set.of( createEntry() ), Set.of() );
+
+        String written = EntryFields.writer( mapper, Set.of( "path", "sha1" ) ).writeValueAsString( dto );
+        JsonNode projected = mapper.readTree( written );
+        JsonNode upload = projected.get( "uploads" ).get( 0 );
+        assertEquals( "build-1", projected.get( "key" ).get( "id" ).asText() );
+        assertEquals( Set.of( "path", "sha1" ), fieldNames( upload ) );
+        assertEquals( "/a/b/c.jar", upload.get( "path" ).asText() );
+
+        // the mapper itself still writes every field
+        JsonNode full = mapper.readTree( mapper.writeValueAsString( dto ) );
+        assertEquals( EntryFields.NAMES, fieldNames( full.get( "uploads" ).get( 0 ) ) );
+    }
+
+    private static Set<String> fieldNames( JsonNode node )
+    {
+        Set<String> names = new HashSet<>();
+        node.fieldNames().forEachRemaining( names::add );
+        return names;
+    }
+
+    private static TrackedContentEntryDTO createEntry()
+    {
+        TrackedContentEntryDTO entry =
+                        new TrackedContentEntryDTO( new StoreKey( PKG_TYPE_MAVEN, StoreType.hosted, "builds" ),
+                                                    AccessChannel.NATIVE, "/a/b/c.jar" );
+        entry.setOriginUrl( "http://repo.example.com/a/b/c.jar" );
+        entry.setLocalUrl( "http://localhost:8081/api/content/maven/hosted/builds/a/b/c.jar" );
+        entry.setMd5( "d41d8cd98f00b204e9800998ecf8427e" );
+        entry.setSha1( "da39a3ee5e6b4b0d3255bfef95601890afd80709" );
+        entry.setSha256( "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855" );
+        entry.setSize( 42L );
+        entry.setTimestamps( Set.of( 1700000000000L ) );
+        entry.setEffect( StoreEffect.UPLOAD );
+        return entry;
+    }
+}